@@ -0,0 +1,321 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.rabbitmq.WebhookMessage;
+import com.example.webhook_delivery.rabbitmq.WebhookMessageConverter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load run of ingest, queue and delivery in one JVM, without a broker, database or
+ * Redis: an in-process queue of AMQP messages stands in for RabbitMQ and a stub HTTP sink with
+ * configurable latency and error rate stands in for the endpoints. Ingest parsing, message
+ * conversion, signing, the {@link DeliveryEngine} and the pooled HTTP client are the real ones.
+ * <p>
+ * Events are offered at a fixed rate ({@code --rate}, 0 for as fast as the queue accepts) and
+ * latency is measured from each event's scheduled time, so a stalled pipeline shows up in the
+ * percentiles instead of slowing the offered load. Failed attempts are re-queued straight away,
+ * up to {@code --max-attempts}. Allocation is counted on the pipeline's own threads only.
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec@load -Dload.args="--events=200000 --rate=5000 --sink-latency-ms=20"
+ * </pre>
+ */
+public class DeliveryLoadHarness {
+
+    private static final String SINK_PATH = "/hook";
+    private static final String[] PIPELINE_THREADS = {"ingest-", "consumer-", "delivery-"};
+
+    private final int events;
+    private final int rate;
+    private final int payloadKb;
+    private final int consumers;
+    private final int maxAttempts;
+    private final long sinkLatencyMs;
+    private final double sinkErrorRate;
+    private final int maxConcurrency;
+    private final int maxPerHost;
+    private final double latencyTolerance;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final WebhookMessageConverter converter = new WebhookMessageConverter(4096);
+    private final SignatureService signatureService = new SignatureService();
+    private final BlockingQueue<Message> broker = new ArrayBlockingQueue<>(10_000);
+    private final UUID subscriptionId = UUID.randomUUID();
+    private final String secret = "whsec_" + UUID.randomUUID();
+
+    private long[] scheduledNanos;
+    private long[] latencyNanos;
+    private CountDownLatch finished;
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+
+    DeliveryLoadHarness(Map<String, String> args) {
+        this.events = Integer.parseInt(args.getOrDefault("events", "100000"));
+        this.rate = Integer.parseInt(args.getOrDefault("rate", "0"));
+        this.payloadKb = Integer.parseInt(args.getOrDefault("payload-kb", "1"));
+        this.consumers = Integer.parseInt(args.getOrDefault("consumers", "4"));
+        this.maxAttempts = Integer.parseInt(args.getOrDefault("max-attempts", "3"));
+        this.sinkLatencyMs = Long.parseLong(args.getOrDefault("sink-latency-ms", "5"));
+        this.sinkErrorRate = Double.parseDouble(args.getOrDefault("sink-error-rate", "0.01"));
+        this.maxConcurrency = Integer.parseInt(args.getOrDefault("max-concurrency", "500"));
+        this.maxPerHost = Integer.parseInt(args.getOrDefault("max-per-host", "200"));
+        // Against a sink this fast, jitter alone reads as congestion to the adaptive per-host limit
+        this.latencyTolerance = Double.parseDouble(args.getOrDefault("latency-tolerance", "2.0"));
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> args = new HashMap<>();
+        for (String arg : argv) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            args.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        DeliveryLoadHarness harness = new DeliveryLoadHarness(args);
+        int warmup = Integer.parseInt(args.getOrDefault("warmup-events", "20000"));
+        if (warmup > 0) {
+            new DeliveryLoadHarness(withEvents(args, warmup)).run(false);
+        }
+        harness.run(true);
+    }
+
+    private static Map<String, String> withEvents(Map<String, String> args, int events) {
+        Map<String, String> copy = new HashMap<>(args);
+        copy.put("events", Integer.toString(events));
+        return copy;
+    }
+
+    void run(boolean report) throws Exception {
+        scheduledNanos = new long[events];
+        latencyNanos = new long[events];
+        finished = new CountDownLatch(events);
+
+        HttpServer sink = startSink();
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxConcurrency)
+                        .setMaxConnPerRoute(maxPerHost)
+                        .build())
+                .disableAutomaticRetries()
+                .build();
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        EndpointHealthRegistry endpointHealth = new EndpointHealthRegistry(maxPerHost, 1, 0.9, latencyTolerance, 20, 10, 50, 30_000, 3, 60_000, 600_000);
+        DeliveryEngine engine = new DeliveryEngine(maxConcurrency, 30, endpointHealth);
+        engine.start();
+        String targetUrl = "http://127.0.0.1:" + sink.getAddress().getPort() + SINK_PATH;
+
+        ExecutorService consumerPool = Executors.newFixedThreadPool(consumers, named("consumer-"));
+        for (int i = 0; i < consumers; i++) {
+            consumerPool.execute(() -> consume(engine, endpointHealth, restTemplate, targetUrl));
+        }
+
+        long allocatedBefore = pipelineAllocatedBytes();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTimeMs();
+        long start = System.nanoTime();
+        Thread ingest = named("ingest-").newThread(() -> ingest(start));
+        ingest.start();
+        finished.await();
+        long elapsedNanos = System.nanoTime() - start;
+        long allocated = pipelineAllocatedBytes() - allocatedBefore;
+        long gcCount = gcCount() - gcCountBefore;
+        long gcTime = gcTimeMs() - gcTimeBefore;
+
+        consumerPool.shutdownNow();
+        engine.stop();
+        httpClient.close();
+        sink.stop(0);
+        ((ExecutorService) sink.getExecutor()).shutdownNow();
+
+        if (report) {
+            report(elapsedNanos, allocated, gcCount, gcTime);
+        }
+    }
+
+    private void ingest(long start) {
+        byte[] body = ingestBody();
+        long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        try {
+            for (int i = 0; i < events; i++) {
+                long scheduled = start + i * intervalNanos;
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                scheduledNanos[i] = rate > 0 ? scheduled : System.nanoTime();
+                WebhookIngestionService.RawPayload raw = WebhookIngestionService.readPayload(jsonFactory, body);
+                // The event's index travels in its task id, so completions can be matched without a map
+                WebhookMessage message = new WebhookMessage(new UUID(0, i), subscriptionId, raw.eventType(), raw.payload(),
+                        1, null, System.currentTimeMillis(), 0, 0, TraceContext.continueOrStart(null));
+                publish(message);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Ingest failed", e);
+        }
+    }
+
+    private void publish(WebhookMessage message) throws InterruptedException {
+        message.setEnqueuedAt(System.currentTimeMillis());
+        broker.put(converter.toMessage(message, new MessageProperties()));
+    }
+
+    private void consume(DeliveryEngine engine, EndpointHealthRegistry endpointHealth, RestTemplate restTemplate, String targetUrl) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WebhookMessage message = (WebhookMessage) converter.fromMessage(broker.take());
+                engine.submit("127.0.0.1", () -> deliver(message, endpointHealth, restTemplate, targetUrl));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void deliver(WebhookMessage message, EndpointHealthRegistry endpointHealth, RestTemplate restTemplate, String targetUrl) {
+        if (message.getFirstAttemptAt() == 0) {
+            message.setFirstAttemptAt(System.currentTimeMillis());
+        }
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            long timestamp = System.currentTimeMillis() / 1000;
+            headers.set(SignatureService.TIMESTAMP_HEADER, Long.toString(timestamp));
+            headers.set(SignatureService.SIGNATURE_HEADER,
+                    signatureService.sign(subscriptionId, secret, timestamp, message.getPayload()));
+            headers.set(TraceContext.HEADER, TraceContext.childOf(message.getTraceparent()));
+            restTemplate.postForEntity(targetUrl, new HttpEntity<>(message.getPayload(), headers), String.class);
+            endpointHealth.recordSuccess("127.0.0.1", (System.nanoTime() - start) / 1_000_000);
+            success = true;
+        } catch (RestClientException e) { // Sink errors and connection failures alike
+            endpointHealth.recordFailure("127.0.0.1", (System.nanoTime() - start) / 1_000_000);
+            success = false;
+        }
+        if (!success && message.getAttempt() < maxAttempts) {
+            retried.incrementAndGet();
+            message.setAttempt(message.getAttempt() + 1);
+            try {
+                publish(message);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        int index = (int) message.getDeliveryTaskId().getLeastSignificantBits();
+        latencyNanos[index] = System.nanoTime() - scheduledNanos[index];
+        (success ? delivered : failed).incrementAndGet();
+        finished.countDown();
+    }
+
+    private HttpServer startSink() throws Exception {
+        // Otherwise Nagle holds back each small response for the client's delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(Executors.newFixedThreadPool(maxConcurrency, named("sink-")));
+        server.createContext(SINK_PATH, exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.transferTo(OutputStream.nullOutputStream());
+            }
+            if (sinkLatencyMs > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(sinkLatencyMs));
+            }
+            int status = ThreadLocalRandom.current().nextDouble() < sinkErrorRate ? 503 : 204;
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    private byte[] ingestBody() {
+        StringBuilder items = new StringBuilder();
+        for (int i = 0; items.length() < payloadKb * 1024; i++) {
+            items.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"item-").append(i)
+                    .append("\",\"price\":").append(i * 1.5).append('}');
+        }
+        return ("{\"eventType\":\"order.created\",\"payload\":{\"items\":[" + items + "]}}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void report(long elapsedNanos, long allocatedBytes, long gcCount, long gcTimeMs) {
+        double seconds = elapsedNanos / 1e9;
+        long[] sorted = latencyNanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf("events            %d (payload %d KB, rate %s, sink %d ms / %.2f%% errors)%n",
+                events, payloadKb, rate > 0 ? rate + "/s" : "unthrottled", sinkLatencyMs, sinkErrorRate * 100);
+        System.out.printf("delivered         %d, failed %d, retried attempts %d%n", delivered.get(), failed.get(), retried.get());
+        System.out.printf("throughput        %.0f events/s over %.2f s%n", events / seconds, seconds);
+        System.out.printf("end-to-end        p50 %.2f ms, p99 %.2f ms, p999 %.2f ms, max %.2f ms%n",
+                percentileMs(sorted, 0.50), percentileMs(sorted, 0.99), percentileMs(sorted, 0.999), sorted[sorted.length - 1] / 1e6);
+        System.out.printf("allocation        %.1f MB/s, %d bytes/event (pipeline threads)%n",
+                allocatedBytes / seconds / (1024 * 1024), allocatedBytes / events);
+        System.out.printf("gc                %d collections, %d ms%n", gcCount, gcTimeMs);
+    }
+
+    private static double percentileMs(long[] sorted, double q) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(q * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static long pipelineAllocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            for (String prefix : PIPELINE_THREADS) {
+                if (thread.getName().startsWith(prefix)) {
+                    total += Math.max(0, threads.getThreadAllocatedBytes(thread.getId()));
+                    break;
+                }
+            }
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcTimeMs() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static ThreadFactory named(String prefix) {
+        AtomicLong counter = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.rabbitmq.WebhookMessage;
+import com.example.webhook_delivery.rabbitmq.WebhookMessageConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One payload from ingest body to HTTP request bytes, through the AMQP message conversion on
+ * both sides. {@code legacyObjectTree} is the previous path: bind to an object tree, serialize
+ * to a String, wrap in a JSON envelope, parse it back and encode to bytes.
+ * Run with {@code -prof gc} to compare allocation per delivery.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadPipelineBenchmark {
+
+    @Param({"1", "16"})
+    public int payloadKb;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final WebhookMessageConverter rawConverter = new WebhookMessageConverter();
+    private final Jackson2JsonMessageConverter jsonConverter = new Jackson2JsonMessageConverter();
+    private final UUID subscriptionId = UUID.randomUUID();
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        StringBuilder items = new StringBuilder();
+        for (int i = 0; items.length() < payloadKb * 1024; i++) {
+            items.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"item-").append(i)
+                    .append("\",\"price\":").append(i * 1.5).append(",\"tags\":[\"a\",\"b\"]}");
+        }
+        body = ("{\"eventType\":\"order.created\",\"payload\":{\"items\":[" + items + "]}}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] rawBytes() throws Exception {
+        WebhookIngestionService.RawPayload raw = WebhookIngestionService.readPayload(objectMapper.getFactory(), body);
+        WebhookMessage message = new WebhookMessage(UUID.randomUUID(), subscriptionId, raw.eventType(), raw.payload(), 1, null, System.currentTimeMillis(), 0, 0, null);
+        Message amqp = rawConverter.toMessage(message, new MessageProperties());
+        return ((WebhookMessage) rawConverter.fromMessage(amqp)).getPayload();
+    }
+
+    @Benchmark
+    public byte[] legacyObjectTree() throws Exception {
+        Map<?, ?> dto = objectMapper.readValue(body, Map.class);
+        String payload = objectMapper.writeValueAsString(dto.get("payload"));
+        LegacyMessage message = new LegacyMessage(UUID.randomUUID(), subscriptionId, (String) dto.get("eventType"), payload, 1);
+        Message amqp = jsonConverter.toMessage(message, new MessageProperties());
+        // The listener container converts to the @RabbitListener parameter type
+        amqp.getMessageProperties().setInferredArgumentType(LegacyMessage.class);
+        return ((LegacyMessage) jsonConverter.fromMessage(amqp)).payload.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static class LegacyMessage {
+        public UUID deliveryTaskId;
+        public UUID subscriptionId;
+        public String eventType;
+        public String payload;
+        public int attempt;
+
+        public LegacyMessage() {
+        }
+
+        LegacyMessage(UUID deliveryTaskId, UUID subscriptionId, String eventType, String payload, int attempt) {
+            this.deliveryTaskId = deliveryTaskId;
+            this.subscriptionId = subscriptionId;
+            this.eventType = eventType;
+            this.payload = payload;
+            this.attempt = attempt;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.webhook_delivery.service;
+
+import org.apache.commons.codec.digest.HmacAlgorithms;
+import org.apache.commons.codec.digest.HmacUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of signing one outbound delivery by payload size. {@code legacyHmacUtils} is the
+ * previous approach (new keyed instance and hex string per call), kept for comparison.
+ * Divide the score by {@code payloadKb} for the per-KB cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureBenchmark {
+
+    @Param({"1", "4", "16", "64"})
+    public int payloadKb;
+
+    private final SignatureService signatureService = new SignatureService();
+    private final UUID subscriptionId = UUID.randomUUID();
+    private final String secret = "whsec_" + UUID.randomUUID();
+    private final long timestamp = System.currentTimeMillis() / 1000;
+    private byte[] payload;
+    private String payloadString;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[payloadKb * 1024];
+        Arrays.fill(payload, (byte) 'a');
+        payloadString = new String(payload, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String cachedMac() {
+        return signatureService.sign(subscriptionId, secret, timestamp, payload);
+    }
+
+    @Benchmark
+    public String legacyHmacUtils() {
+        return "sha256=" + new HmacUtils(HmacAlgorithms.HMAC_SHA_256, secret).hmacHex(timestamp + "." + payloadString);
+    }
+}
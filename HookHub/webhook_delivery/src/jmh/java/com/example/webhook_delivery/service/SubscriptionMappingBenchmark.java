@@ -0,0 +1,84 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.dto.SubscriptionRequestDto;
+import com.example.webhook_delivery.dto.SubscriptionResponseDto;
+import com.example.webhook_delivery.entity.Subscription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.BeanUtils;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@code BeanUtils.copyProperties} mapping in {@link SubscriptionService}, against
+ * plain getter/setter copies as the floor reflection-free mapping would reach.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriptionMappingBenchmark {
+
+    private Subscription subscription;
+    private SubscriptionRequestDto request;
+
+    @Setup
+    public void setUp() {
+        subscription = new Subscription();
+        subscription.setId(UUID.randomUUID());
+        subscription.setTargetUrl("https://example.com/hooks/orders");
+        subscription.setEventType("order.created");
+        subscription.setSecretKey("whsec_" + UUID.randomUUID());
+        subscription.setMaxRps(100);
+        subscription.setMaxConcurrency(10);
+        subscription.setMaxRetries(5);
+        subscription.setRetryBaseDelayMs(10_000L);
+        subscription.setRetryMaxDelayMs(900_000L);
+        subscription.setAcceptsGzip(true);
+        subscription.setOrdered(false);
+
+        request = new SubscriptionRequestDto();
+        BeanUtils.copyProperties(subscription, request);
+    }
+
+    @Benchmark
+    public SubscriptionResponseDto copyPropertiesToResponse() {
+        SubscriptionResponseDto dto = new SubscriptionResponseDto();
+        BeanUtils.copyProperties(subscription, dto);
+        return dto;
+    }
+
+    @Benchmark
+    public Subscription copyPropertiesFromRequest() {
+        Subscription entity = new Subscription();
+        BeanUtils.copyProperties(request, entity, "id");
+        return entity;
+    }
+
+    @Benchmark
+    public SubscriptionResponseDto settersToResponse() {
+        SubscriptionResponseDto dto = new SubscriptionResponseDto();
+        dto.setId(subscription.getId());
+        dto.setTargetUrl(subscription.getTargetUrl());
+        dto.setEventType(subscription.getEventType());
+        dto.setMaxRps(subscription.getMaxRps());
+        dto.setMaxConcurrency(subscription.getMaxConcurrency());
+        dto.setMaxRetries(subscription.getMaxRetries());
+        dto.setRetryBaseDelayMs(subscription.getRetryBaseDelayMs());
+        dto.setRetryMaxDelayMs(subscription.getRetryMaxDelayMs());
+        dto.setAcceptsGzip(subscription.getAcceptsGzip());
+        dto.setOrdered(subscription.getOrdered());
+        return dto;
+    }
+}
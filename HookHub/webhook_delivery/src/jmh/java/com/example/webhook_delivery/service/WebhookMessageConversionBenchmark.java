@@ -0,0 +1,68 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.rabbitmq.WebhookMessage;
+import com.example.webhook_delivery.rabbitmq.WebhookMessageConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips of a fully populated {@link WebhookMessage}: through the AMQP converter, as on
+ * every publish and consume, and through JSON, as when a retry is scheduled in Redis or an
+ * ordered subscription spills. Payloads from {@code compress-threshold-bytes} are gzipped on
+ * the AMQP path, so the 16 KB case includes compression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebhookMessageConversionBenchmark {
+
+    @Param({"1", "16"})
+    public int payloadKb;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Same threshold as the app.payload.compress-threshold-bytes default
+    private final WebhookMessageConverter converter = new WebhookMessageConverter(4096);
+    private WebhookMessage message;
+
+    @Setup
+    public void setUp() {
+        byte[] payload = new byte[payloadKb * 1024];
+        Arrays.fill(payload, (byte) 'a');
+        payload[0] = '"';
+        payload[payload.length - 1] = '"';
+        long now = System.currentTimeMillis();
+        message = new WebhookMessage(UUID.randomUUID(), UUID.randomUUID(), "order.created", payload, 2, null,
+                now - 1000, now - 500, now, TraceContext.continueOrStart(null));
+    }
+
+    @Benchmark
+    public WebhookMessage amqpRoundTrip() {
+        Message amqp = converter.toMessage(message, new MessageProperties());
+        return (WebhookMessage) converter.fromMessage(amqp);
+    }
+
+    @Benchmark
+    public WebhookMessage jsonRoundTrip() throws Exception {
+        String json = objectMapper.writeValueAsString(message);
+        return objectMapper.readValue(json, WebhookMessage.class);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.webhook_delivery.config;
+
+import com.example.webhook_delivery.service.EndpointHealthRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Exposes per-host circuit breaker state and adaptive concurrency limits at
+ * {@code /actuator/circuitbreakers}.
+ */
+@Component
+@Endpoint(id = "circuitbreakers")
+@RequiredArgsConstructor
+public class CircuitBreakerEndpoint {
+
+    private final EndpointHealthRegistry endpointHealth;
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> circuitBreakers() {
+        return endpointHealth.snapshot();
+    }
+
+    @ReadOperation
+    public Map<String, Object> circuitBreaker(@Selector String host) {
+        return endpointHealth.snapshot().get(host);
+    }
+}
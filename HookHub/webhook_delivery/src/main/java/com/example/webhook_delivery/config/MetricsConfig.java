@@ -0,0 +1,63 @@
+package com.example.webhook_delivery.config;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Configuration
+public class MetricsConfig {
+
+    public static final String HOST_TAG = "host";
+    public static final String SUBSCRIPTION_TAG = "subscription";
+    static final String OTHER = "other";
+
+    @Bean
+    public MeterFilter boundedHostTags(@Value("${app.metrics.max-host-tags}") int maxHosts) {
+        return new BoundedTagValues("hookhub.delivery", HOST_TAG, maxHosts);
+    }
+
+    @Bean
+    public MeterFilter boundedSubscriptionTags(@Value("${app.metrics.max-subscription-tags}") int maxSubscriptions) {
+        return new BoundedTagValues("hookhub.", SUBSCRIPTION_TAG, maxSubscriptions);
+    }
+
+    /**
+     * Keeps the first {@code max} values of a tag seen on matching meters and folds every later
+     * one into {@code other}, so one tag per host or subscription cannot grow without limit.
+     */
+    static final class BoundedTagValues implements MeterFilter {
+
+        private final String namePrefix;
+        private final String tagKey;
+        private final int max;
+        private final Set<String> allowed = ConcurrentHashMap.newKeySet();
+
+        BoundedTagValues(String namePrefix, String tagKey, int max) {
+            this.namePrefix = namePrefix;
+            this.tagKey = tagKey;
+            this.max = max;
+        }
+
+        @Override
+        public Meter.Id map(Meter.Id id) {
+            if (!id.getName().startsWith(namePrefix)) {
+                return id;
+            }
+            String value = id.getTag(tagKey);
+            if (value == null || allowed.contains(value)) {
+                return id;
+            }
+            // Racing registrations may let a few more through; the bound only needs to be rough
+            if (allowed.size() < max && allowed.add(value)) {
+                return id;
+            }
+            return id.replaceTags(Tags.of(id.getTagsAsIterable()).and(tagKey, OTHER));
+        }
+    }
+}
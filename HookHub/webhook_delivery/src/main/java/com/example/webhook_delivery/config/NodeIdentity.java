@@ -0,0 +1,24 @@
+package com.example.webhook_delivery.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.UUID;
+
+/**
+ * Identifies this instance on shared channels so a node can ignore its own broadcasts.
+ */
+@Component
+public class NodeIdentity {
+
+    private final String id;
+
+    public NodeIdentity(@Value("${app.node-id:}") String configuredId) {
+        this.id = StringUtils.hasText(configuredId) ? configuredId : UUID.randomUUID().toString();
+    }
+
+    public String getId() {
+        return id;
+    }
+}
@@ -1,25 +1,28 @@
 package com.example.webhook_delivery.config;
 
+import com.example.webhook_delivery.rabbitmq.DeliveryShards;
+import com.example.webhook_delivery.rabbitmq.WebhookMessageConverter;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class RabbitMQConfig {
 
     public static final String DLX_EXCHANGE = "webhook.dlx.exchange";
-    public static final String QUEUE_RETRY_10S = "webhook.retry.10s";
-    public static final String QUEUE_RETRY_30S = "webhook.retry.30s";
-    public static final String QUEUE_RETRY_1M = "webhook.retry.1m";
-    public static final String QUEUE_RETRY_5M = "webhook.retry.5m";
-    public static final String QUEUE_RETRY_15M = "webhook.retry.15m";
-    public static final String QUEUE_DELIVERY = "webhook.delivery.queue";
+    public static final String QUEUE_RETRY_10S = "webhook.retry.10s.sharded";
+    public static final String DELIVERY_LISTENER_FACTORY = "deliveryListenerContainerFactory";
 
     @Value("${app.rabbitmq.queue}")
     private String queueName;
@@ -30,6 +33,9 @@ public class RabbitMQConfig {
     @Value("${app.rabbitmq.routingkey}")
     private String routingKey;
 
+    @Value("${app.rabbitmq.shards}")
+    private int shards;
+
 
     @Bean
     public Exchange exchange() {
@@ -45,106 +51,82 @@ public class RabbitMQConfig {
         return new DirectExchange(DLX_EXCHANGE);
     }
 
+    /**
+     * One durable queue per shard, each consumed by a single active consumer so messages of a
+     * subscription are taken in order. A shard dead-letters through the shared 10s retry queue
+     * under its own key, which routes the message back to the same shard.
+     */
     @Bean
-    public Queue deliveryQueue() {
-        return QueueBuilder.durable(queueName)
-                .withArgument("x-dead-letter-exchange", DLX_EXCHANGE)
-                .withArgument("x-dead-letter-routing-key", QUEUE_RETRY_10S)
-                .build();
-    }
-
-    @Bean
-    public Queue retryQueue10s() {
-        return QueueBuilder.durable(QUEUE_RETRY_10S)
+    public Declarables deliveryShards() {
+        Exchange exchange = exchange();
+        DirectExchange deadLetterExchange = deadLetterExchange();
+        Queue retryQueue = QueueBuilder.durable(QUEUE_RETRY_10S)
                 .withArgument("x-dead-letter-exchange", exchangeName)
-                .withArgument("x-dead-letter-routing-key", routingKey)
                 .withArgument("x-message-ttl", 10000L) // 10 seconds
                 .build();
-    }
-
-    @Bean
-    public Queue retryQueue30s() {
-        return QueueBuilder.durable(QUEUE_RETRY_30S)
-                .withArgument("x-dead-letter-exchange", exchangeName)
-                .withArgument("x-dead-letter-routing-key", routingKey)
-                .withArgument("x-message-ttl", 30000L) // 30 seconds
-                .build();
-    }
-
-    @Bean
-    public Queue retryQueue1m(){
-        return QueueBuilder.durable(QUEUE_RETRY_1M)
-                .withArgument("x-dead-letter-exchange", exchangeName)
-                .withArgument("x-dead-letter-routing-key", routingKey)
-                .withArgument("x-message-ttl", 60000L) // 1 minute
-                .build();
-    }
-
-    @Bean
-    public Queue retryQueue5m(){
-        return QueueBuilder.durable(QUEUE_RETRY_5M)
-                .withArgument("x-dead-letter-exchange", exchangeName)
-                .withArgument("x-dead-letter-routing-key", routingKey)
-                .withArgument("x-message-ttl", 300000L) // 5 minutes
-                .build();
-    }
-
-    @Bean
-    public Queue retryQueue15m(){
-        return QueueBuilder.durable(QUEUE_RETRY_15M)
-                .withArgument("x-dead-letter-exchange", exchangeName)
-                .withArgument("x-dead-letter-routing-key", routingKey)
-                .withArgument("x-message-ttl", 900000L) // 15 minutes
-                .build();
-    }
-
-    @Bean
-    public Binding deliveryBinding() {
-        Exchange ex = exchange();
-        if (ex instanceof DirectExchange) {
-            return BindingBuilder.bind(deliveryQueue()).to((DirectExchange) ex).with(routingKey);
-        } else {
-            return BindingBuilder.bind(deliveryQueue()).to((TopicExchange) ex).with(routingKey);
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(retryQueue);
+        for (int shard = 0; shard < shards; shard++) {
+            String retryKey = DeliveryShards.retryRoutingKey(QUEUE_RETRY_10S, shard);
+            Queue queue = QueueBuilder.durable(DeliveryShards.queueName(queueName, shard))
+                    .singleActiveConsumer()
+                    .withArgument("x-dead-letter-exchange", DLX_EXCHANGE)
+                    .withArgument("x-dead-letter-routing-key", retryKey)
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(exchange).with(DeliveryShards.routingKey(routingKey, shard)).noargs());
+            declarables.add(BindingBuilder.bind(queue).to(exchange).with(retryKey).noargs());
+            declarables.add(BindingBuilder.bind(retryQueue).to(deadLetterExchange).with(retryKey));
         }
+        return new Declarables(declarables);
     }
 
+    /**
+     * Used by the template and the listener containers alike: webhook payloads travel as raw
+     * bytes with their metadata in headers, anything else as JSON.
+     */
     @Bean
-    public Binding retry10sBinding() {
-        return BindingBuilder.bind(retryQueue10s()).to(deadLetterExchange()).with(QUEUE_RETRY_10S);
-    }
-
-    @Bean
-    public Binding retry30sBinding() {
-        return BindingBuilder.bind(retryQueue30s()).to(deadLetterExchange()).with(QUEUE_RETRY_30S);
-    }
-
-    @Bean
-    public Binding retry1mBinding() {
-        return BindingBuilder.bind(retryQueue1m()).to(deadLetterExchange()).with(QUEUE_RETRY_1M);
+    public MessageConverter jsonMessageConverter(@Value("${app.payload.compress-threshold-bytes}") int compressThresholdBytes) {
+        return new WebhookMessageConverter(compressThresholdBytes);
     }
 
     @Bean
-    public Binding retry5mBinding() {
-        return BindingBuilder.bind(retryQueue5m()).to(deadLetterExchange()).with(QUEUE_RETRY_5M);
-    }
-
-    @Bean
-    public Binding retry15mBinding() {
-        return BindingBuilder.bind(retryQueue15m()).to(deadLetterExchange()).with(QUEUE_RETRY_15M);
-    }
-
-    @Bean
-    public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
-    }
-
-    @Bean
-    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory, MessageConverter messageConverter) {
         final RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
-        rabbitTemplate.setMessageConverter(jsonMessageConverter());
+        rabbitTemplate.setMessageConverter(messageConverter);
+        // Unroutable messages come back on their CorrelationData instead of vanishing
+        rabbitTemplate.setMandatory(true);
         return rabbitTemplate;
     }
 
+    /**
+     * Container factory for the delivery shard listeners: batches of messages per call, manual
+     * acks and their own prefetch. One consumer per container; a shard queue only ever feeds one.
+     */
+    @Bean(DELIVERY_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory deliveryListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${app.rabbitmq.listener.prefetch}") int prefetch,
+            @Value("${app.rabbitmq.listener.batch-size}") int batchSize,
+            @Value("${app.rabbitmq.listener.batch-timeout-ms}") long batchTimeoutMs,
+            @Value("${app.delivery.shutdown-timeout-seconds}") long shutdownTimeoutSeconds) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(prefetch);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        // A partial batch is handed over once no message has arrived for this long
+        factory.setReceiveTimeout(batchTimeoutMs);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setDefaultRequeueRejected(false);
+        factory.setContainerCustomizer(container -> container.setShutdownTimeout(TimeUnit.SECONDS.toMillis(shutdownTimeoutSeconds)));
+        return factory;
+    }
+
     @Bean
     public AmqpAdmin amqpAdmin(ConnectionFactory connectionFactory) {
         return new RabbitAdmin(connectionFactory);
@@ -0,0 +1,37 @@
+package com.example.webhook_delivery.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.RedisCacheManagerBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+
+@Configuration
+public class RedisConfig {
+
+    public static final String SUBSCRIPTION_CHANGES_CHANNEL = "hookhub:subscriptions:changed";
+    public static final String DELIVERY_STATUS_CHANNEL = "hookhub:delivery-status";
+    public static final String IDEMPOTENCY_KEYS_CHANNEL = "hookhub:idempotency-keys";
+    public static final String SUBSCRIPTIONS_BY_ID_CACHE = "subscriptionsById";
+
+    @Value("${app.subscription-cache.shared-ttl-seconds}")
+    private long subscriptionsByIdTtlSeconds;
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    @Bean
+    public RedisCacheManagerBuilderCustomizer subscriptionCacheCustomizer() {
+        return builder -> builder.withCacheConfiguration(SUBSCRIPTIONS_BY_ID_CACHE,
+                RedisCacheConfiguration.defaultCacheConfig()
+                        .entryTtl(Duration.ofSeconds(subscriptionsByIdTtlSeconds)));
+    }
+}
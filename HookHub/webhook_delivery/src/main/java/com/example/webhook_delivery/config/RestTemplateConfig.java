@@ -1,21 +1,115 @@
 package com.example.webhook_delivery.config;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
 public class RestTemplateConfig {
 
     private final RestTemplateBuilder restTemplateBuilder;
 
+    @Value("${app.delivery.http.max-connections-total}")
+    private int maxConnectionsTotal;
+
+    @Value("${app.delivery.http.max-connections-per-host}")
+    private int maxConnectionsPerHost;
+
+    @Value("${app.delivery.http.connect-timeout-ms}")
+    private long connectTimeoutMs;
+
+    @Value("${app.delivery.http.read-timeout-ms}")
+    private long readTimeoutMs;
+
+    @Value("${app.delivery.http.response-timeout-ms}")
+    private long responseTimeoutMs;
+
+    @Value("${app.delivery.http.pool-acquire-timeout-ms}")
+    private long poolAcquireTimeoutMs;
+
+    @Value("${app.delivery.http.idle-eviction-seconds}")
+    private long idleEvictionSeconds;
+
+    @Value("${app.delivery.http.connection-ttl-seconds}")
+    private long connectionTtlSeconds;
+
+    @Value("${app.delivery.http.http2-enabled}")
+    private boolean http2Enabled;
+
     public RestTemplateConfig(RestTemplateBuilder restTemplateBuilder) {
         this.restTemplateBuilder = restTemplateBuilder;
     }
 
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager deliveryConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnectionsTotal)
+                .setMaxConnPerRoute(maxConnectionsPerHost)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setTimeToLive(TimeValue.ofSeconds(connectionTtlSeconds))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient deliveryHttpClient(PoolingHttpClientConnectionManager deliveryConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(deliveryConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolAcquireTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                        .build())
+                .evictIdleConnections(TimeValue.ofSeconds(idleEvictionSeconds))
+                .evictExpiredConnections()
+                // Retries are handled by the delivery worker, never silently by the client
+                .disableAutomaticRetries()
+                .build();
+    }
+
     @Bean
-    public RestTemplate myRestTemplate() {
-        return restTemplateBuilder.build();
+    public RestTemplate myRestTemplate(CloseableHttpClient deliveryHttpClient) {
+        return restTemplateBuilder
+                .requestFactory(() -> deliveryRequestFactory(deliveryHttpClient))
+                .build();
+    }
+
+    @Bean
+    public MeterBinder deliveryConnectionPoolMetrics(PoolingHttpClientConnectionManager deliveryConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(deliveryConnectionManager, "delivery");
+    }
+
+    private ClientHttpRequestFactory deliveryRequestFactory(CloseableHttpClient deliveryHttpClient) {
+        if (http2Enabled) {
+            // The JDK client negotiates HTTP/2 and multiplexes requests per host; pool limits don't apply to it
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                    .build();
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(client);
+            factory.setReadTimeout(Duration.ofMillis(responseTimeoutMs));
+            return factory;
+        }
+        return new HttpComponentsClientHttpRequestFactory(deliveryHttpClient);
     }
 }
@@ -1,26 +1,55 @@
 package com.example.webhook_delivery.controller;
 
+import com.example.webhook_delivery.dto.DeliveryLogFilter;
+import com.example.webhook_delivery.dto.DeliveryLogPageDto;
+import com.example.webhook_delivery.dto.DeliveryLogSummaryDto;
+import com.example.webhook_delivery.dto.SubscriptionStatsDto;
 import com.example.webhook_delivery.entity.WebhookDeliveryLog;
 import com.example.webhook_delivery.repository.WebhookDeliveryLogRepository;
+import com.example.webhook_delivery.service.DeliveryLogExporter;
+import com.example.webhook_delivery.service.DeliveryStatsAggregator;
+import com.example.webhook_delivery.service.LiveStatusBroadcaster;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @RestController
 @RequestMapping("/api/status")
 @RequiredArgsConstructor
 public class DeliveryStatusController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final Pattern WINDOW = Pattern.compile("(\\d{1,5})([mhd])");
+
     private final WebhookDeliveryLogRepository deliveryLogRepository;
+    private final DeliveryStatsAggregator statsAggregator;
+    private final DeliveryLogExporter logExporter;
+    private final LiveStatusBroadcaster liveStatus;
 
     @GetMapping("/task/{taskId}")
     public ResponseEntity<List<WebhookDeliveryLog>> getStatusByTaskId(@PathVariable UUID taskId) {
@@ -29,16 +58,128 @@ public class DeliveryStatusController {
     }
 
     @GetMapping("/subscription/{subscriptionId}")
-    public List<WebhookDeliveryLog> getRecentForSubscription(@PathVariable UUID subscriptionId) {
-        return deliveryLogRepository.findBySubscriptionIdOrderByTimestampDesc(subscriptionId, PageRequest.of(0, 20));
+    public List<DeliveryLogSummaryDto> getRecentForSubscription(@PathVariable UUID subscriptionId) {
+        DeliveryLogFilter filter = new DeliveryLogFilter();
+        filter.setSubscriptionId(subscriptionId);
+        return deliveryLogRepository.findPage(filter, 20);
+    }
+
+    /**
+     * Success rate, status classes and HTTP latency percentiles over the last {@code window}
+     * ({@code 15m}, {@code 1h}, {@code 7d}), from the per-minute rollups.
+     */
+    @GetMapping("/subscription/{subscriptionId}/stats")
+    public SubscriptionStatsDto getStatsForSubscription(@PathVariable UUID subscriptionId,
+                                                        @RequestParam(defaultValue = "1h") String window) {
+        try {
+            return statsAggregator.stats(subscriptionId, parseWindow(window));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @GetMapping("/recent")
-    public List<WebhookDeliveryLog> getRecentLogs(@RequestParam(required = false) Integer hours) {
+    public List<DeliveryLogSummaryDto> getRecentLogs(@RequestParam(required = false) Integer hours) {
+        DeliveryLogFilter filter = new DeliveryLogFilter();
         if (hours != null && hours > 0) {
-            LocalDateTime since = LocalDateTime.now().minusHours(hours);
-            return deliveryLogRepository.findByTimestampAfterOrderByTimestampDesc(since, PageRequest.of(0, 50));
+            filter.setFrom(LocalDateTime.now().minusHours(hours));
+        }
+        return deliveryLogRepository.findPage(filter, 50);
+    }
+
+    /**
+     * Keyset-paginated log listing. Pass the previous page's {@code nextCursor} as {@code after}
+     * (format {@code <timestamp>,<id>}) to continue.
+     */
+    @GetMapping("/logs")
+    public DeliveryLogPageDto getLogs(DeliveryLogFilter filter,
+                                      @RequestParam(required = false) String after,
+                                      @RequestParam(defaultValue = "50") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        if (after != null) {
+            applyCursor(filter, after);
+        }
+        List<DeliveryLogSummaryDto> items = deliveryLogRepository.findPage(filter, pageSize);
+        String nextCursor = null;
+        if (items.size() == pageSize) {
+            DeliveryLogSummaryDto last = items.get(items.size() - 1);
+            nextCursor = last.getTimestamp() + "," + last.getId();
+        }
+        return new DeliveryLogPageDto(items, nextCursor);
+    }
+
+    /**
+     * Every log matching the filter, oldest first, as NDJSON or CSV, optionally gzipped. Rows
+     * are streamed from a database cursor as the client reads them.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(DeliveryLogFilter filter,
+                                                        @RequestParam(defaultValue = "ndjson") String format,
+                                                        @RequestParam(defaultValue = "false") boolean gzip,
+                                                        WebRequest request) {
+        DeliveryLogExporter.Format exportFormat;
+        try {
+            exportFormat = DeliveryLogExporter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported format: " + format);
+        }
+        DeliveryLogExporter.Reservation reservation = logExporter.tryReserve();
+        if (reservation == null) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many exports running, try again later");
+        }
+        // The body releases it when it runs; this covers a body that never does, when the async
+        // executor rejects it or the request times out or fails before it starts
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(DeliveryLogExporter.class.getName(),
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                        reservation.release();
+                    }
+                });
+        String fileName = "delivery-logs." + exportFormat.name().toLowerCase(Locale.ROOT) + (gzip ? ".gz" : "");
+        MediaType contentType = gzip ? MediaType.parseMediaType("application/gzip")
+                : exportFormat == DeliveryLogExporter.Format.CSV ? MediaType.parseMediaType("text/csv;charset=UTF-8")
+                : MediaType.APPLICATION_NDJSON;
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(out -> logExporter.export(reservation, filter, exportFormat, gzip, out));
+    }
+
+    /**
+     * Delivery attempts as they are made on any node, as Server-Sent Events, optionally only
+     * those of one subscription or task. Clients too slow to keep up are disconnected.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(required = false) UUID subscriptionId,
+                             @RequestParam(required = false) UUID taskId) {
+        SseEmitter emitter = liveStatus.register(subscriptionId, taskId);
+        if (emitter == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many live status clients, try again later");
+        }
+        return emitter;
+    }
+
+    private static Duration parseWindow(String window) {
+        Matcher matcher = WINDOW.matcher(window.trim());
+        if (!matcher.matches() || Long.parseLong(matcher.group(1)) == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid window: " + window);
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2)) {
+            case "m" -> Duration.ofMinutes(amount);
+            case "h" -> Duration.ofHours(amount);
+            default -> Duration.ofDays(amount);
+        };
+    }
+
+    private static void applyCursor(DeliveryLogFilter filter, String cursor) {
+        int separator = cursor.lastIndexOf(',');
+        try {
+            filter.setAfterTimestamp(LocalDateTime.parse(cursor.substring(0, separator)));
+            filter.setAfterId(Long.parseLong(cursor.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException | StringIndexOutOfBoundsException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor: " + cursor);
         }
-        return deliveryLogRepository.findAll(PageRequest.of(0, 50)).getContent();
     }
 }
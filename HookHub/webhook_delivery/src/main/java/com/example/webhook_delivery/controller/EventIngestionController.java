@@ -0,0 +1,26 @@
+package com.example.webhook_delivery.controller;
+
+import com.example.webhook_delivery.dto.BatchIngestResultDto;
+import com.example.webhook_delivery.service.TraceContext;
+import com.example.webhook_delivery.service.WebhookIngestionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/events")
+@RequiredArgsConstructor
+public class EventIngestionController {
+
+    private final WebhookIngestionService webhookIngestionService;
+
+    @PostMapping("/{eventType}")
+    public ResponseEntity<List<BatchIngestResultDto>> publishEvent(
+            @PathVariable String eventType,
+            @RequestBody byte[] payload,
+            @RequestHeader(value = TraceContext.HEADER, required = false) String traceparent) {
+        return webhookIngestionService.fanOut(eventType, payload, traceparent);
+    }
+}
@@ -1,14 +1,18 @@
 package com.example.webhook_delivery.controller;
 
-import com.example.webhook_delivery.dto.WebhookPayloadDto;
+import com.example.webhook_delivery.dto.BatchIngestResultDto;
+import com.example.webhook_delivery.dto.BatchWebhookItemDto;
 import com.example.webhook_delivery.service.SignatureService;
 import com.example.webhook_delivery.service.SubscriptionService;
+import com.example.webhook_delivery.service.TraceContext;
 import com.example.webhook_delivery.service.WebhookIngestionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -21,7 +25,23 @@ public class WebhookIngestionController {
     @PostMapping("/{subscriptionId}")
     public ResponseEntity<String> ingestWebhook(
             @PathVariable UUID subscriptionId,
-            @RequestBody WebhookPayloadDto webhookPayload) {
-            return webhookIngestionService.ingest(subscriptionId, webhookPayload);
+            @RequestBody byte[] body,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestHeader(value = TraceContext.HEADER, required = false) String traceparent) {
+            return webhookIngestionService.ingest(subscriptionId, body, idempotencyKey, traceparent);
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BatchIngestResultDto>> ingestBatch(
+            @RequestBody List<BatchWebhookItemDto> items,
+            @RequestHeader(value = TraceContext.HEADER, required = false) String traceparent) {
+        return webhookIngestionService.ingestBatch(items, traceparent);
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<BatchIngestResultDto>> ingestBatchNdjson(
+            @RequestBody String body,
+            @RequestHeader(value = TraceContext.HEADER, required = false) String traceparent) {
+        return webhookIngestionService.ingestBatch(webhookIngestionService.parseNdjson(body), traceparent);
     }
 }
@@ -0,0 +1,26 @@
+package com.example.webhook_delivery.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchIngestResultDto {
+    private int index;
+    private UUID subscriptionId;
+    private UUID deliveryTaskId;
+    private boolean accepted;
+    private String error;
+
+    public static BatchIngestResultDto accepted(int index, UUID subscriptionId, UUID deliveryTaskId) {
+        return new BatchIngestResultDto(index, subscriptionId, deliveryTaskId, true, null);
+    }
+
+    public static BatchIngestResultDto rejected(int index, UUID subscriptionId, String error) {
+        return new BatchIngestResultDto(index, subscriptionId, null, false, error);
+    }
+}
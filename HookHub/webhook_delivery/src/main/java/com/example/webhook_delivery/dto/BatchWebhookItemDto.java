@@ -4,10 +4,13 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.UUID;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class WebhookPayloadDto {
+public class BatchWebhookItemDto {
+    private UUID subscriptionId;
     private String eventType;
     private Object payload;
 }
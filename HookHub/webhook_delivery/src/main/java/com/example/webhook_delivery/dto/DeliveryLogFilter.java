@@ -0,0 +1,25 @@
+package com.example.webhook_delivery.dto;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+public class DeliveryLogFilter {
+    private UUID subscriptionId;
+    private String outcome;
+    private Integer minStatus;
+    private Integer maxStatus;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime to;
+
+    // Keyset cursor: only rows strictly older than (afterTimestamp, afterId) are returned
+    private LocalDateTime afterTimestamp;
+    private Long afterId;
+}
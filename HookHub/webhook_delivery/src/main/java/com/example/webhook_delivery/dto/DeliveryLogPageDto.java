@@ -0,0 +1,15 @@
+package com.example.webhook_delivery.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryLogPageDto {
+    private List<DeliveryLogSummaryDto> items;
+    private String nextCursor; // null on the last page
+}
@@ -0,0 +1,26 @@
+package com.example.webhook_delivery.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryLogSummaryDto {
+    private Long id;
+    private UUID deliveryTaskId;
+    private UUID subscriptionId;
+    private String targetUrl;
+    private LocalDateTime timestamp;
+    private int attemptNumber;
+    private String outcome;
+    private Integer httpStatusCode;
+    private String errorDetails;
+    private Long queueWaitMs;
+    private Long httpMs;
+    private Long endToEndMs;
+}
@@ -1,6 +1,7 @@
 package com.example.webhook_delivery.dto;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
 import lombok.Data;
 import org.hibernate.validator.constraints.URL;
 
@@ -14,4 +15,23 @@ public class SubscriptionRequestDto {
     private String eventType;
 
     private String secretKey;
+
+    @Positive
+    private Integer maxRps;
+
+    @Positive
+    private Integer maxConcurrency;
+
+    @Positive
+    private Integer maxRetries;
+
+    @Positive
+    private Long retryBaseDelayMs;
+
+    @Positive
+    private Long retryMaxDelayMs;
+
+    private Boolean acceptsGzip;
+
+    private Boolean ordered;
 }
@@ -9,4 +9,11 @@ public class SubscriptionResponseDto {
     private UUID id;
     private String targetUrl;
     private String eventType;
+    private Integer maxRps;
+    private Integer maxConcurrency;
+    private Integer maxRetries;
+    private Long retryBaseDelayMs;
+    private Long retryMaxDelayMs;
+    private Boolean acceptsGzip;
+    private Boolean ordered;
 }
@@ -0,0 +1,33 @@
+package com.example.webhook_delivery.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Delivery attempts of one subscription over a window, from the per-minute rollups. Rates are
+ * per attempt; latencies are HTTP time, {@code null} when no request was made in the window.
+ */
+@Data
+@NoArgsConstructor
+public class SubscriptionStatsDto {
+    private UUID subscriptionId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private long attempts;
+    private long successes;
+    private long failedAttempts;
+    private long failures;
+    private Double successRate;
+    private long status2xx;
+    private long status3xx;
+    private long status4xx;
+    private long status5xx;
+    private long noResponse;
+    private Long meanHttpMs;
+    private Long p50HttpMs;
+    private Long p95HttpMs;
+    private Long p99HttpMs;
+}
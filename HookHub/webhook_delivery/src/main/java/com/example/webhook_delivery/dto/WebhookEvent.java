@@ -13,5 +13,5 @@ import java.util.UUID;
 public class WebhookEvent implements Serializable {
     private UUID deliveryId;
     private UUID subscriptionId;
-    private String payload;
+    private byte[] payload;
 }
@@ -0,0 +1,52 @@
+package com.example.webhook_delivery.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Delivery attempts of one subscription in one minute. Written and read through
+ * {@code DeliveryStatsAggregator}; the entity only defines the table.
+ */
+@Entity
+@Table(name = "delivery_stats_rollup")
+@IdClass(DeliveryStatsRollup.Key.class)
+@Data
+@NoArgsConstructor
+public class DeliveryStatsRollup {
+    @Id
+    private UUID subscriptionId;
+    @Id
+    private LocalDateTime bucketStart;
+
+    private long attempts;
+    private long successes;
+    private long failedAttempts;
+    private long failures;
+    private long status2xx;
+    private long status3xx;
+    private long status4xx;
+    private long status5xx;
+    private long noResponse; // Network errors and attempts that never made a request
+    private long httpMsTotal;
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(columnDefinition = "bigint[]")
+    private long[] latencyBuckets; // LatencyHistogram counts of HTTP time
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private UUID subscriptionId;
+        private LocalDateTime bucketStart;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.webhook_delivery.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Accepted event waiting to be relayed to the broker. Written and read through
+ * {@code DeliveryOutbox}; the entity only defines the table.
+ */
+@Entity
+@Table(name = "delivery_outbox", indexes = {
+        @Index(name = "idx_delivery_outbox_available_at", columnList = "availableAt")
+})
+@Data
+@NoArgsConstructor
+public class OutboxMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private UUID deliveryTaskId;
+    private UUID subscriptionId;
+    private String eventType;
+    @Column(columnDefinition = "bytea")
+    private byte[] payload;
+    @Column(length = 64)
+    private String payloadRef;
+    @Column(length = 55)
+    private String traceparent;
+    private LocalDateTime createdAt;
+    private LocalDateTime availableAt; // Pushed out while a relay holds the row
+}
@@ -0,0 +1,29 @@
+package com.example.webhook_delivery.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Large payload stored once and referenced from queued messages by its SHA-256.
+ * Written and read through {@code PayloadStore}; the entity only defines the table.
+ */
+@Entity
+@Table(name = "payload_blob", indexes = {
+        @Index(name = "idx_payload_blob_last_used", columnList = "lastUsedAt")
+})
+@Data
+@NoArgsConstructor
+public class PayloadBlob {
+    @Id
+    @Column(length = 64)
+    private String hash; // Hex SHA-256 of the uncompressed payload
+
+    @Column(nullable = false, columnDefinition = "bytea")
+    private byte[] content; // Gzip-compressed payload
+
+    private int size; // Uncompressed size in bytes
+
+    private LocalDateTime lastUsedAt;
+}
@@ -8,6 +8,9 @@ import java.util.UUID;
 @Entity
 @Data
 public class Subscription implements Serializable {
+    // Cached in Redis as serialized Java: fixed so added fields do not invalidate cached entries
+    private static final long serialVersionUID = 1L;
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     private UUID id;
@@ -19,4 +22,18 @@ public class Subscription implements Serializable {
     private String eventType; // For event filtering bonus point
 
     private String secretKey; // For signature verification bonus point
+
+    private Integer maxRps; // Delivery rate limit, null for unlimited
+
+    private Integer maxConcurrency; // Concurrent deliveries limit, null for unlimited
+
+    private Integer maxRetries; // Total delivery attempts, null for app.webhook.max-retries
+
+    private Long retryBaseDelayMs; // First retry delay, null for app.retry.base-delay-ms
+
+    private Long retryMaxDelayMs; // Retry delay cap, null for app.retry.max-delay-ms
+
+    private Boolean acceptsGzip; // Endpoint accepts gzip-encoded request bodies
+
+    private Boolean ordered; // Deliver one event at a time, in order, holding later ones while one is retried
 }
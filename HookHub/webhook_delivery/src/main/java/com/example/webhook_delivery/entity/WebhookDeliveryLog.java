@@ -7,11 +7,18 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_delivery_log_task_ts", columnList = "deliveryTaskId, timestamp"),
+        @Index(name = "idx_delivery_log_sub_ts_id", columnList = "subscriptionId, timestamp, id"),
+        @Index(name = "idx_delivery_log_outcome_ts_id", columnList = "outcome, timestamp, id"),
+        @Index(name = "idx_delivery_log_ts_id", columnList = "timestamp, id")
+})
 @Data
 @NoArgsConstructor
 public class WebhookDeliveryLog {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "webhook_delivery_log_seq")
+    @SequenceGenerator(name = "webhook_delivery_log_seq", sequenceName = "webhook_delivery_log_seq", allocationSize = 50)
     private Long id;
 
     private UUID deliveryTaskId;
@@ -23,6 +30,9 @@ public class WebhookDeliveryLog {
     private Integer httpStatusCode;
     @Column(columnDefinition = "TEXT")
     private String errorDetails;
+    private Long queueWaitMs; // Last publish to the attempt starting, broker and local queues together
+    private Long httpMs;
+    private Long endToEndMs; // Ingest to the end of this attempt
 
     public WebhookDeliveryLog(UUID deliveryTaskId, UUID subscriptionId, String targetUrl, int attemptNumber) {
         this.deliveryTaskId = deliveryTaskId;
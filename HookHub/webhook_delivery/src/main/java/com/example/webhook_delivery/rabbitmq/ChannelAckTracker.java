@@ -0,0 +1,121 @@
+package com.example.webhook_delivery.rabbitmq;
+
+import com.rabbitmq.client.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Settles one consumer channel's deliveries, which complete out of order, with as few acks
+ * as possible.
+ * <p>
+ * Once {@code messagesPerAck} deliveries have completed, or nothing is in progress any more,
+ * the completed ones directly following those already settled are acknowledged with a single
+ * {@code multiple} ack and any others individually. A multiple ack never reaches past a tag
+ * this tracker has not seen settled, so deliveries the listener never registered stay
+ * outstanding. Rejections are sent straight away.
+ */
+public class ChannelAckTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChannelAckTracker.class);
+
+    private final Channel channel;
+    private final int messagesPerAck;
+    private final NavigableSet<Long> inProgress = new TreeSet<>();
+    private final NavigableSet<Long> completed = new TreeSet<>();
+    // Tags above settledThrough already settled one by one, waiting for the gap below to close
+    private final NavigableSet<Long> settledAbove = new TreeSet<>();
+    private long settledThrough;
+    private long lastRegistered;
+    private boolean contiguous = true;
+
+    public ChannelAckTracker(Channel channel, int messagesPerAck) {
+        this.channel = channel;
+        this.messagesPerAck = messagesPerAck;
+    }
+
+    /**
+     * Registers a delivery before it is processed; must be called in delivery-tag order.
+     */
+    public synchronized void register(long deliveryTag) {
+        if (contiguous && deliveryTag != lastRegistered + 1) {
+            // A tag was skipped, so no multiple ack can safely cover this channel's tags any more
+            logger.warn("Delivery tag {} registered after {}, acking individually from now on", deliveryTag, lastRegistered);
+            contiguous = false;
+            settledAbove.clear();
+        }
+        lastRegistered = Math.max(lastRegistered, deliveryTag);
+        inProgress.add(deliveryTag);
+    }
+
+    public synchronized void ack(long deliveryTag) {
+        if (inProgress.remove(deliveryTag)) {
+            completed.add(deliveryTag);
+            flush();
+        }
+    }
+
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    /**
+     * Rejects a delivery; without requeue the queue dead-letters it.
+     */
+    public synchronized void reject(long deliveryTag, boolean requeue) {
+        if (!inProgress.remove(deliveryTag)) {
+            return;
+        }
+        try {
+            channel.basicNack(deliveryTag, false, requeue);
+        } catch (IOException e) {
+            logger.error("Failed to nack delivery tag {}: {}", deliveryTag, e.getMessage());
+        }
+        markSettled(deliveryTag);
+        flush();
+    }
+
+    private void flush() {
+        if (completed.isEmpty() || (completed.size() < messagesPerAck && !inProgress.isEmpty())) {
+            return;
+        }
+        if (contiguous) {
+            long lastCompleted = 0;
+            while (true) {
+                long next = settledThrough + 1;
+                if (completed.remove(next)) {
+                    lastCompleted = next;
+                } else if (!settledAbove.remove(next)) {
+                    break;
+                }
+                settledThrough = next;
+            }
+            if (lastCompleted > 0) {
+                basicAck(lastCompleted, true);
+            }
+        }
+        // Whatever completed behind a slow delivery is acked one by one so it stops using up prefetch
+        for (long deliveryTag : completed) {
+            basicAck(deliveryTag, false);
+            markSettled(deliveryTag);
+        }
+        completed.clear();
+    }
+
+    private void markSettled(long deliveryTag) {
+        if (contiguous && deliveryTag > settledThrough) {
+            settledAbove.add(deliveryTag);
+        }
+    }
+
+    private void basicAck(long deliveryTag, boolean multiple) {
+        try {
+            channel.basicAck(deliveryTag, multiple);
+        } catch (IOException e) {
+            logger.error("Failed to ack delivery tag {} (multiple={}): {}", deliveryTag, multiple, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.webhook_delivery.rabbitmq;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Naming and placement for the delivery shards.
+ * <p>
+ * A subscription maps to a shard with jump consistent hashing, so changing the shard count
+ * moves only the subscriptions that have to move. A shard maps to a node with rendezvous
+ * hashing over the live nodes, so a node joining or leaving only moves the shards it takes
+ * or gives up.
+ */
+public final class DeliveryShards {
+
+    private DeliveryShards() {
+    }
+
+    public static String queueName(String baseQueue, int shard) {
+        return baseQueue + ".shard." + shard;
+    }
+
+    public static String routingKey(String baseRoutingKey, int shard) {
+        return baseRoutingKey + "." + shard;
+    }
+
+    /**
+     * Key a shard's dead-lettered messages travel under, through the retry queue and back.
+     */
+    public static String retryRoutingKey(String retryQueue, int shard) {
+        return retryQueue + "." + shard;
+    }
+
+    public static int shardOf(UUID subscriptionId, int shards) {
+        long key = subscriptionId.getMostSignificantBits() ^ subscriptionId.getLeastSignificantBits();
+        long bucket = -1;
+        long next = 0;
+        while (next < shards) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    /**
+     * The node that should consume the shard, or {@code null} if there are no nodes.
+     */
+    public static String ownerOf(int shard, Collection<String> nodes) {
+        String owner = null;
+        long best = Long.MIN_VALUE;
+        for (String node : nodes) {
+            long weight = mix(fnv1a(node) ^ (shard * 0x9E3779B97F4A7C15L));
+            if (owner == null || weight > best || (weight == best && node.compareTo(owner) < 0)) {
+                owner = node;
+                best = weight;
+            }
+        }
+        return owner;
+    }
+
+    private static long fnv1a(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
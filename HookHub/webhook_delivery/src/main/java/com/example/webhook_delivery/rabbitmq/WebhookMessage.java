@@ -1,9 +1,21 @@
 package com.example.webhook_delivery.rabbitmq;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 @Data
@@ -13,6 +25,33 @@ public class WebhookMessage implements Serializable {
     private UUID deliveryTaskId;
     private UUID subscriptionId;  // The specific subscription to deliver to
     private String eventType;
-    private String payload;
+    // Raw JSON bytes as received; written as a JSON string where a JSON envelope is still used
+    @JsonSerialize(using = Utf8Serializer.class)
+    @JsonDeserialize(using = Utf8Deserializer.class)
+    private byte[] payload;
     private int attempt;
+    private String payloadRef; // Set instead of payload when the payload was offloaded to PayloadStore
+    private long ingestedAt; // Epoch millis when the event was accepted, 0 if unknown
+    private long firstAttemptAt; // Epoch millis the first delivery attempt started, 0 before it
+    private long enqueuedAt; // Epoch millis of the latest publish to the broker
+    private String traceparent; // W3C trace context of the ingest request
+
+    public static class Utf8Serializer extends JsonSerializer<byte[]> {
+        @Override
+        public void serialize(byte[] value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            // Only byte-based generators take UTF-8 as is; writeValueAsString uses a character-based one
+            if (gen instanceof UTF8JsonGenerator) {
+                gen.writeUTF8String(value, 0, value.length);
+            } else {
+                gen.writeString(new String(value, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    public static class Utf8Deserializer extends JsonDeserializer<byte[]> {
+        @Override
+        public byte[] deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            return p.getText().getBytes(StandardCharsets.UTF_8);
+        }
+    }
 }
@@ -0,0 +1,117 @@
+package com.example.webhook_delivery.rabbitmq;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Puts a {@link WebhookMessage}'s routing metadata in AMQP headers and its raw payload bytes
+ * in the message body, so neither side runs the payload through JSON again. Bodies from
+ * {@code compressThresholdBytes} up are gzipped and marked with a content encoding; offloaded
+ * payloads travel as a reference header with an empty body.
+ * <p>
+ * Anything else, and messages published in the old JSON envelope, go through Jackson.
+ */
+public class WebhookMessageConverter implements MessageConverter {
+
+    public static final String HEADER_DELIVERY_TASK_ID = "x-hookhub-delivery-task-id";
+    public static final String HEADER_SUBSCRIPTION_ID = "x-hookhub-subscription-id";
+    public static final String HEADER_EVENT_TYPE = "x-hookhub-event-type";
+    public static final String HEADER_ATTEMPT = "x-hookhub-attempt";
+    public static final String HEADER_PAYLOAD_REF = "x-hookhub-payload-ref";
+    public static final String HEADER_INGESTED_AT = "x-hookhub-ingested-at";
+    public static final String HEADER_FIRST_ATTEMPT_AT = "x-hookhub-first-attempt-at";
+    public static final String HEADER_ENQUEUED_AT = "x-hookhub-enqueued-at";
+    public static final String HEADER_TRACEPARENT = "traceparent";
+
+    private final Jackson2JsonMessageConverter fallback = new Jackson2JsonMessageConverter();
+    private final int compressThresholdBytes;
+
+    public WebhookMessageConverter() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public WebhookMessageConverter(int compressThresholdBytes) {
+        this.compressThresholdBytes = compressThresholdBytes;
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        if (!(object instanceof WebhookMessage webhook)) {
+            return fallback.toMessage(object, messageProperties);
+        }
+        messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        messageProperties.setHeader(HEADER_DELIVERY_TASK_ID, webhook.getDeliveryTaskId().toString());
+        messageProperties.setHeader(HEADER_SUBSCRIPTION_ID, webhook.getSubscriptionId().toString());
+        if (webhook.getEventType() != null) {
+            messageProperties.setHeader(HEADER_EVENT_TYPE, webhook.getEventType());
+        }
+        messageProperties.setHeader(HEADER_ATTEMPT, webhook.getAttempt());
+        if (webhook.getPayloadRef() != null) {
+            messageProperties.setHeader(HEADER_PAYLOAD_REF, webhook.getPayloadRef());
+        }
+        if (webhook.getIngestedAt() > 0) {
+            messageProperties.setHeader(HEADER_INGESTED_AT, webhook.getIngestedAt());
+        }
+        if (webhook.getFirstAttemptAt() > 0) {
+            messageProperties.setHeader(HEADER_FIRST_ATTEMPT_AT, webhook.getFirstAttemptAt());
+        }
+        if (webhook.getEnqueuedAt() > 0) {
+            messageProperties.setHeader(HEADER_ENQUEUED_AT, webhook.getEnqueuedAt());
+        }
+        if (webhook.getTraceparent() != null) {
+            messageProperties.setHeader(HEADER_TRACEPARENT, webhook.getTraceparent());
+        }
+        byte[] body = webhook.getPayload() != null ? webhook.getPayload() : new byte[0];
+        if (body.length >= compressThresholdBytes) {
+            body = PayloadCompression.gzip(body);
+            messageProperties.setContentEncoding(PayloadCompression.GZIP);
+        }
+        messageProperties.setContentLength(body.length);
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        Map<String, Object> headers = message.getMessageProperties().getHeaders();
+        Object taskId = headers.get(HEADER_DELIVERY_TASK_ID);
+        if (taskId == null) {
+            return fallback.fromMessage(message);
+        }
+        try {
+            WebhookMessage webhook = new WebhookMessage();
+            webhook.setDeliveryTaskId(UUID.fromString(taskId.toString()));
+            webhook.setSubscriptionId(UUID.fromString(String.valueOf(headers.get(HEADER_SUBSCRIPTION_ID))));
+            Object eventType = headers.get(HEADER_EVENT_TYPE);
+            webhook.setEventType(eventType != null ? eventType.toString() : null);
+            Object attempt = headers.get(HEADER_ATTEMPT);
+            webhook.setAttempt(attempt instanceof Number number ? number.intValue() : 1);
+            webhook.setIngestedAt(epochMillis(headers.get(HEADER_INGESTED_AT)));
+            webhook.setFirstAttemptAt(epochMillis(headers.get(HEADER_FIRST_ATTEMPT_AT)));
+            webhook.setEnqueuedAt(epochMillis(headers.get(HEADER_ENQUEUED_AT)));
+            Object traceparent = headers.get(HEADER_TRACEPARENT);
+            webhook.setTraceparent(traceparent != null ? traceparent.toString() : null);
+            Object payloadRef = headers.get(HEADER_PAYLOAD_REF);
+            if (payloadRef != null) {
+                webhook.setPayloadRef(payloadRef.toString());
+            } else if (PayloadCompression.GZIP.equals(message.getMessageProperties().getContentEncoding())) {
+                webhook.setPayload(PayloadCompression.gunzip(message.getBody()));
+            } else {
+                webhook.setPayload(message.getBody());
+            }
+            return webhook;
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            throw new MessageConversionException("Malformed webhook message", e);
+        }
+    }
+
+    private static long epochMillis(Object header) {
+        return header instanceof Number number ? number.longValue() : 0;
+    }
+}
@@ -1,18 +1,13 @@
 package com.example.webhook_delivery.repository;
 
 import com.example.webhook_delivery.entity.WebhookDeliveryLog;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
 @Repository
-public interface WebhookDeliveryLogRepository extends JpaRepository<WebhookDeliveryLog, Long> {
+public interface WebhookDeliveryLogRepository extends JpaRepository<WebhookDeliveryLog, Long>, WebhookDeliveryLogRepositoryCustom {
     List<WebhookDeliveryLog> findByDeliveryTaskIdOrderByTimestampAsc(UUID deliveryTaskId);
-    List<WebhookDeliveryLog> findBySubscriptionIdOrderByTimestampDesc(UUID subscriptionId, Pageable pageable);
-    List<WebhookDeliveryLog> findByTimestampAfterOrderByTimestampDesc(LocalDateTime timestamp, Pageable pageable);
-    void deleteByTimestampBefore(LocalDateTime timestamp);
 }
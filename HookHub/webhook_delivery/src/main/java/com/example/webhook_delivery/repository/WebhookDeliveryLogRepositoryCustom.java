@@ -0,0 +1,23 @@
+package com.example.webhook_delivery.repository;
+
+import com.example.webhook_delivery.dto.DeliveryLogFilter;
+import com.example.webhook_delivery.dto.DeliveryLogSummaryDto;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface WebhookDeliveryLogRepositoryCustom {
+
+    /**
+     * Returns up to {@code limit} rows matching the filter, newest first, starting after the
+     * filter's keyset cursor. Cost depends on the page size, not on how deep the page is.
+     */
+    List<DeliveryLogSummaryDto> findPage(DeliveryLogFilter filter, int limit);
+
+    /**
+     * Streams every row matching the filter, oldest first, from a server-side cursor read
+     * {@code fetchSize} rows at a time. Rows are unmanaged projections, so memory stays flat
+     * however many there are. Must be consumed and closed inside a transaction.
+     */
+    Stream<DeliveryLogSummaryDto> streamAll(DeliveryLogFilter filter, int fetchSize);
+}
@@ -0,0 +1,84 @@
+package com.example.webhook_delivery.repository;
+
+import com.example.webhook_delivery.dto.DeliveryLogFilter;
+import com.example.webhook_delivery.dto.DeliveryLogSummaryDto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class WebhookDeliveryLogRepositoryCustomImpl implements WebhookDeliveryLogRepositoryCustom {
+
+    static final String SUMMARY_SELECT = "select new com.example.webhook_delivery.dto.DeliveryLogSummaryDto("
+            + "l.id, l.deliveryTaskId, l.subscriptionId, l.targetUrl, l.timestamp, l.attemptNumber, "
+            + "l.outcome, l.httpStatusCode, l.errorDetails, l.queueWaitMs, l.httpMs, l.endToEndMs) from WebhookDeliveryLog l where 1 = 1";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<DeliveryLogSummaryDto> findPage(DeliveryLogFilter filter, int limit) {
+        StringBuilder jpql = new StringBuilder(SUMMARY_SELECT);
+        Map<String, Object> params = new HashMap<>();
+        appendFilter(filter, jpql, params);
+        if (filter.getAfterTimestamp() != null && filter.getAfterId() != null) {
+            // The redundant upper bound is what the index range scan starts from; the OR alone
+            // is only a filter, so every row newer than the cursor would be read and dropped
+            jpql.append(" and l.timestamp <= :afterTs and (l.timestamp < :afterTs or l.id < :afterId)");
+            params.put("afterTs", filter.getAfterTimestamp());
+            params.put("afterId", filter.getAfterId());
+        }
+        jpql.append(" order by l.timestamp desc, l.id desc");
+
+        TypedQuery<DeliveryLogSummaryDto> query = entityManager.createQuery(jpql.toString(), DeliveryLogSummaryDto.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public Stream<DeliveryLogSummaryDto> streamAll(DeliveryLogFilter filter, int fetchSize) {
+        StringBuilder jpql = new StringBuilder(SUMMARY_SELECT);
+        Map<String, Object> params = new HashMap<>();
+        appendFilter(filter, jpql, params);
+        jpql.append(" order by l.timestamp, l.id");
+
+        TypedQuery<DeliveryLogSummaryDto> query = entityManager.createQuery(jpql.toString(), DeliveryLogSummaryDto.class);
+        params.forEach(query::setParameter);
+        // The PostgreSQL driver only uses a cursor with a fetch size and autocommit off
+        return query.setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    static void appendFilter(DeliveryLogFilter filter, StringBuilder jpql, Map<String, Object> params) {
+        if (filter.getSubscriptionId() != null) {
+            jpql.append(" and l.subscriptionId = :subscriptionId");
+            params.put("subscriptionId", filter.getSubscriptionId());
+        }
+        if (filter.getOutcome() != null) {
+            jpql.append(" and l.outcome = :outcome");
+            params.put("outcome", filter.getOutcome());
+        }
+        if (filter.getMinStatus() != null) {
+            jpql.append(" and l.httpStatusCode >= :minStatus");
+            params.put("minStatus", filter.getMinStatus());
+        }
+        if (filter.getMaxStatus() != null) {
+            jpql.append(" and l.httpStatusCode <= :maxStatus");
+            params.put("maxStatus", filter.getMaxStatus());
+        }
+        if (filter.getFrom() != null) {
+            jpql.append(" and l.timestamp >= :from");
+            params.put("from", filter.getFrom());
+        }
+        if (filter.getTo() != null) {
+            jpql.append(" and l.timestamp < :to");
+            params.put("to", filter.getTo());
+        }
+    }
+}
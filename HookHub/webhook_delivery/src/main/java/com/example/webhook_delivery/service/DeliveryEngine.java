@@ -0,0 +1,217 @@
+package com.example.webhook_delivery.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs outbound deliveries off the Rabbit listener threads.
+ * <p>
+ * A global semaphore caps the number of deliveries in flight; callers block in {@link #submit}
+ * once it is exhausted, which pushes back on the broker through the consumer prefetch.
+ * Each target host gets its own lane so a slow endpoint can only occupy as many workers as
+ * its adaptive limit in {@link EndpointHealthRegistry} allows, while other hosts keep flowing.
+ * A global permit is only taken once the lane starts a delivery: deliveries waiting behind a
+ * saturated host hold none and do not block the caller, so they are bounded by the prefetch
+ * alone, and a slow or broken host cannot use up the permits every other host needs.
+ */
+@Service
+public class DeliveryEngine implements SmartLifecycle {
+
+    /** Stops after the Rabbit listener containers so in-flight deliveries can finish and settle. */
+    static final int LIFECYCLE_PHASE = SmartLifecycle.DEFAULT_PHASE - 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryEngine.class);
+
+    /** Returned by a lane for a delivery queued behind its host. */
+    private static final Runnable QUEUED = () -> {
+    };
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore globalPermits;
+    private final EndpointHealthRegistry endpointHealth;
+    private final long shutdownTimeoutSeconds;
+    private final ConcurrentHashMap<String, HostLane> lanes = new ConcurrentHashMap<>();
+    private final Queue<Runnable> ready = new ConcurrentLinkedQueue<>(); // Have a host slot, wait for a global permit
+    private volatile boolean running;
+
+    public DeliveryEngine(@Value("${app.delivery.max-concurrency}") int maxConcurrency,
+                          @Value("${app.delivery.shutdown-timeout-seconds}") long shutdownTimeoutSeconds,
+                          EndpointHealthRegistry endpointHealth) {
+        this.globalPermits = new Semaphore(maxConcurrency);
+        this.endpointHealth = endpointHealth;
+        this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+        this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("delivery-"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedules a delivery against the given host. Blocks while the global limit is reached and
+     * the host has a free slot; returns at once if the delivery has to wait for the host.
+     *
+     * @return a future completed when the delivery has run, exceptionally if it threw
+     */
+    public CompletableFuture<Void> submit(String host, Runnable delivery) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                delivery.run();
+                future.complete(null);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        };
+
+        while (true) {
+            HostLane lane = lanes.computeIfAbsent(host, h -> new HostLane());
+            Runnable start = lane.offer(task, host);
+            if (start == null) {
+                // The lane was retired concurrently, pick up a fresh one.
+                continue;
+            }
+            if (start == QUEUED) {
+                return future;
+            }
+            try {
+                globalPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(e);
+                lane.next(host);
+                startReady();
+                return future;
+            }
+            execute(start);
+            return future;
+        }
+    }
+
+    public int getInFlight() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                logger.warn("Delivery engine did not drain within {}s, {} deliveries abandoned",
+                        shutdownTimeoutSeconds, executor.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return LIFECYCLE_PHASE;
+    }
+
+    /**
+     * Starts deliveries whose host has a free slot, for as long as global permits are free.
+     */
+    private void startReady() {
+        while (!ready.isEmpty() && globalPermits.tryAcquire()) {
+            Runnable task = ready.poll();
+            if (task == null) {
+                globalPermits.release();
+            } else {
+                execute(task);
+            }
+        }
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Only happens during shutdown; run inline so the future and permits are still released.
+            task.run();
+        }
+    }
+
+    /**
+     * Per-host queue of deliveries waiting for a free slot on that host.
+     */
+    private final class HostLane {
+        private final Deque<Runnable> pending = new ArrayDeque<>();
+        private int inFlight;
+        private boolean retired;
+
+        /**
+         * @return the task to start once a global permit is taken, {@link #QUEUED} if it waits
+         *         behind the host, or {@code null} if the lane is retired
+         */
+        synchronized Runnable offer(Runnable task, String host) {
+            if (retired) {
+                return null;
+            }
+            Runnable wrapped = () -> {
+                try {
+                    task.run();
+                } finally {
+                    globalPermits.release();
+                    next(host);
+                    startReady();
+                }
+            };
+            if (inFlight < endpointHealth.concurrencyLimit(host)) {
+                inFlight++;
+                return wrapped;
+            }
+            pending.add(wrapped);
+            return QUEUED;
+        }
+
+        /**
+         * Frees the host slot of a delivery that finished or never started, and hands it to the
+         * next one waiting on the host.
+         */
+        private void next(String host) {
+            Runnable next = null;
+            synchronized (this) {
+                inFlight--;
+                // Re-read the limit: it may have shrunk while this delivery was running
+                if (!pending.isEmpty() && inFlight < endpointHealth.concurrencyLimit(host)) {
+                    inFlight++;
+                    next = pending.poll();
+                } else if (inFlight == 0 && pending.isEmpty()) {
+                    retired = true;
+                    lanes.remove(host, this);
+                }
+            }
+            if (next != null) {
+                ready.add(next);
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.dto.DeliveryLogFilter;
+import com.example.webhook_delivery.dto.DeliveryLogSummaryDto;
+import com.example.webhook_delivery.repository.WebhookDeliveryLogRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes delivery logs matching a filter to a response as NDJSON or CSV, row by row from a
+ * database cursor. Each export holds a connection for as long as the client reads, so only
+ * {@code app.export.max-concurrent} may run at once.
+ */
+@Service
+public class DeliveryLogExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryLogExporter.class);
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final String CSV_HEADER = "id,deliveryTaskId,subscriptionId,targetUrl,timestamp,attemptNumber,"
+            + "outcome,httpStatusCode,errorDetails,queueWaitMs,httpMs,endToEndMs\n";
+
+    public enum Format { NDJSON, CSV }
+
+    private final WebhookDeliveryLogRepository deliveryLogRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter rowWriter;
+    private final Semaphore permits;
+    private final int fetchSize;
+
+    public DeliveryLogExporter(WebhookDeliveryLogRepository deliveryLogRepository,
+                               PlatformTransactionManager transactionManager,
+                               ObjectMapper objectMapper,
+                               @Value("${app.export.fetch-size}") int fetchSize,
+                               @Value("${app.export.max-concurrent}") int maxConcurrent) {
+        this.deliveryLogRepository = deliveryLogRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Flushed by the buffer filling up, not after every row
+        this.rowWriter = objectMapper.writerFor(DeliveryLogSummaryDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.permits = new Semaphore(maxConcurrent);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Reserves a slot for one export; pair with {@link #export}, which releases it. Whoever
+     * hands the export off should also release it once the request is over, in case the export
+     * never runs.
+     *
+     * @return {@code null} if the maximum number of exports is already running
+     */
+    public Reservation tryReserve() {
+        return permits.tryAcquire() ? new Reservation() : null;
+    }
+
+    /**
+     * Streams the matching rows to {@code out}, oldest first, and releases the reserved slot.
+     */
+    public void export(Reservation reservation, DeliveryLogFilter filter, Format format, boolean gzip, OutputStream out) throws IOException {
+        long[] rows = {0};
+        try {
+            OutputStream target = gzip ? new GZIPOutputStream(out, BUFFER_BYTES) : new BufferedOutputStream(out, BUFFER_BYTES);
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<DeliveryLogSummaryDto> stream = deliveryLogRepository.streamAll(filter, fetchSize)) {
+                    if (format == Format.CSV) {
+                        writeCsv(stream.iterator(), target, rows);
+                    } else {
+                        writeNdjson(stream.iterator(), target, rows);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            target.close();
+        } catch (UncheckedIOException e) {
+            // Usually the client going away mid-download
+            logger.info("Delivery log export stopped after {} rows: {}", rows[0], e.getCause().getMessage());
+            throw e.getCause();
+        } finally {
+            reservation.release();
+        }
+        logger.info("Exported {} delivery logs as {}", rows[0], format);
+    }
+
+    /**
+     * A slot taken by {@link #tryReserve}, given back by the first call to {@link #release}.
+     */
+    public final class Reservation {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation() {
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    private void writeNdjson(Iterator<DeliveryLogSummaryDto> rows, OutputStream out, long[] count) throws IOException {
+        try (JsonGenerator generator = rowWriter.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            while (rows.hasNext()) {
+                rowWriter.writeValue(generator, rows.next());
+                generator.writeRaw('\n');
+                count[0]++;
+            }
+        }
+    }
+
+    private void writeCsv(Iterator<DeliveryLogSummaryDto> rows, OutputStream out, long[] count) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write(CSV_HEADER);
+        StringBuilder line = new StringBuilder(256);
+        while (rows.hasNext()) {
+            DeliveryLogSummaryDto row = rows.next();
+            line.setLength(0);
+            line.append(row.getId()).append(',')
+                    .append(row.getDeliveryTaskId()).append(',')
+                    .append(row.getSubscriptionId()).append(',');
+            appendCsvText(line, row.getTargetUrl());
+            line.append(',').append(row.getTimestamp()).append(',')
+                    .append(row.getAttemptNumber()).append(',')
+                    .append(row.getOutcome()).append(',')
+                    .append(orEmpty(row.getHttpStatusCode())).append(',');
+            appendCsvText(line, row.getErrorDetails());
+            line.append(',').append(orEmpty(row.getQueueWaitMs()))
+                    .append(',').append(orEmpty(row.getHttpMs()))
+                    .append(',').append(orEmpty(row.getEndToEndMs()))
+                    .append('\n');
+            writer.append(line);
+            count[0]++;
+        }
+        writer.flush();
+    }
+
+    private static Object orEmpty(Object value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * Quotes a free-text field when needed. Endpoint response bodies end up in here, so values
+     * a spreadsheet would run as a formula are prefixed with a quote.
+     */
+    private static void appendCsvText(StringBuilder line, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        char first = value.charAt(0);
+        boolean formula = first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r';
+        boolean quote = formula || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        if (formula) {
+            line.append('\'');
+        }
+        line.append(value.replace("\"", "\"\"")).append('"');
+    }
+}
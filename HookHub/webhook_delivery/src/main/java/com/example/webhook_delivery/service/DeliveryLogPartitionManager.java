@@ -0,0 +1,266 @@
+package com.example.webhook_delivery.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.dao.DataAccessException;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps {@code webhook_delivery_log} range-partitioned by {@code timestamp}.
+ * <p>
+ * Hibernate creates the table as a plain heap; on first start it is swapped for a partitioned
+ * parent and the original table is attached as the partition holding everything up to the end
+ * of the current period. Partitions are created ahead of time, and retention drops whole
+ * partitions instead of deleting rows, so its cost depends on the number of partitions, not rows.
+ * A DEFAULT partition takes the rows of any period whose partition is missing, such as when
+ * maintenance has failed for longer than {@code partitions-ahead} periods, so inserts never
+ * fail for lack of one; they are moved out when the period's partition is created.
+ */
+@Service
+public class DeliveryLogPartitionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryLogPartitionManager.class);
+
+    private static final String TABLE = "webhook_delivery_log";
+    private static final String LEGACY_TABLE = TABLE + "_legacy";
+    private static final String DEFAULT_PARTITION = TABLE + "_default";
+    private static final long ADVISORY_LOCK_KEY = 0x486F6F6B4C6F6731L; // "HookLog1"
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+    // Same names and columns as the entity's @Index declarations
+    private static final Map<String, String> INDEXES = Map.of(
+            "idx_delivery_log_task_ts", "delivery_task_id, timestamp",
+            "idx_delivery_log_sub_ts_id", "subscription_id, timestamp, id",
+            "idx_delivery_log_outcome_ts_id", "outcome, timestamp, id",
+            "idx_delivery_log_ts_id", "timestamp, id");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PartitionInterval interval;
+    private final int partitionsAhead;
+    private final long detachLockTimeoutMs;
+
+    public DeliveryLogPartitionManager(JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${app.delivery-log.partition-interval}") PartitionInterval interval,
+                                       @Value("${app.delivery-log.partitions-ahead}") int partitionsAhead,
+                                       @Value("${app.delivery-log.detach-lock-timeout-ms}") long detachLockTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.interval = interval;
+        this.partitionsAhead = partitionsAhead;
+        this.detachLockTimeoutMs = detachLockTimeoutMs;
+    }
+
+    public enum PartitionInterval {
+        HOURLY(ChronoUnit.HOURS, DateTimeFormatter.ofPattern("yyyyMMddHH")),
+        DAILY(ChronoUnit.DAYS, DateTimeFormatter.ofPattern("yyyyMMdd"));
+
+        private final ChronoUnit unit;
+        private final DateTimeFormatter suffix;
+
+        PartitionInterval(ChronoUnit unit, DateTimeFormatter suffix) {
+            this.unit = unit;
+            this.suffix = suffix;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        transactionTemplate.executeWithoutResult(status -> {
+            lock();
+            if (!isPartitioned()) {
+                convertToPartitioned();
+            }
+            addTimingColumns();
+            createIndexes();
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+            createPartitionsAhead();
+        });
+    }
+
+    /**
+     * Creates the entity's indexes on the partitioned parent, so every partition gets them.
+     * Schema updates only ever put them on the original table, which became the legacy
+     * partition; its indexes are renamed out of the way and then attached to the parent's
+     * rather than built again.
+     */
+    private void createIndexes() {
+        for (Map.Entry<String, String> index : INDEXES.entrySet()) {
+            String name = index.getKey();
+            Integer onParent = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid "
+                            + "WHERE c.relname = ? AND i.indrelid = '" + TABLE + "'::regclass", Integer.class, name);
+            if (onParent != null && onParent > 0) {
+                continue;
+            }
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS " + name + " RENAME TO " + name + "_legacy");
+            logger.info("Creating index {} on partitioned {}", name, TABLE);
+            jdbcTemplate.execute("CREATE INDEX " + name + " ON " + TABLE + " (" + index.getValue() + ")");
+        }
+    }
+
+    /**
+     * Schema updates are not applied to the partitioned parent, so columns added to the entity
+     * after the conversion are added here; partitions pick them up from the parent.
+     */
+    private void addTimingColumns() {
+        for (String column : new String[]{"queue_wait_ms", "http_ms", "end_to_end_ms"}) {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD COLUMN IF NOT EXISTS " + column + " bigint");
+        }
+    }
+
+    /**
+     * Makes sure partitions exist for the current period and the configured number ahead of it.
+     */
+    public void ensureFuturePartitions() {
+        transactionTemplate.executeWithoutResult(status -> {
+            lock();
+            createPartitionsAhead();
+        });
+    }
+
+    /**
+     * Detaches and drops every partition whose upper bound is at or before the cutoff.
+     * <p>
+     * Detaching locks the whole table, so it gives up after {@code detach-lock-timeout-ms}
+     * instead of queueing behind a long read such as an export, with every log insert queued
+     * behind it; the partitions left are retried on the next run.
+     *
+     * @return the number of partitions dropped
+     */
+    public int dropPartitionsBefore(LocalDateTime cutoff) {
+        int dropped = 0;
+        for (Map.Entry<String, LocalDateTime> partition : listPartitions().entrySet()) {
+            String name = partition.getKey();
+            LocalDateTime upperBound = partition.getValue();
+            if (!upperBound.isAfter(cutoff)) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        lock();
+                        jdbcTemplate.execute("SET LOCAL lock_timeout = " + detachLockTimeoutMs);
+                        jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + name);
+                        jdbcTemplate.execute("DROP TABLE " + name);
+                    });
+                } catch (DataAccessException e) {
+                    logger.warn("Could not drop delivery log partition {}, retrying on the next run: {}", name, e.getMessage());
+                    break;
+                }
+                logger.info("Dropped delivery log partition {} (upper bound {})", name, upperBound);
+                dropped++;
+            }
+        }
+        int expired = jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE timestamp < ?", cutoff);
+        if (expired > 0) {
+            logger.info("Deleted {} expired delivery logs from {}", expired, DEFAULT_PARTITION);
+        }
+        return dropped;
+    }
+
+    private void convertToPartitioned() {
+        jdbcTemplate.execute("LOCK TABLE " + TABLE + " IN ACCESS EXCLUSIVE MODE");
+
+        // The old table keeps every existing row, including any written during the current period
+        LocalDateTime newest = jdbcTemplate.queryForObject("SELECT max(timestamp) FROM " + TABLE, LocalDateTime.class);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime legacyUpper = periodStart(newest != null && newest.isAfter(now) ? newest : now).plus(1, interval.unit);
+        logger.info("Converting {} to a partitioned table, existing rows kept in {} up to {}", TABLE, LEGACY_TABLE, legacyUpper);
+
+        String primaryKey = jdbcTemplate.queryForObject(
+                "SELECT conname FROM pg_constraint WHERE conrelid = '" + TABLE + "'::regclass AND contype = 'p'",
+                String.class);
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_TABLE);
+        jdbcTemplate.execute("ALTER TABLE " + LEGACY_TABLE + " RENAME CONSTRAINT " + primaryKey + " TO " + LEGACY_TABLE + "_pkey");
+        jdbcTemplate.execute("UPDATE " + LEGACY_TABLE + " SET timestamp = '" + BOUND_FORMAT.format(now)
+                + "' WHERE timestamp IS NULL");
+        jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + LEGACY_TABLE + " INCLUDING DEFAULTS) "
+                + "PARTITION BY RANGE (timestamp)");
+        // The partition key has to be part of the primary key
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD PRIMARY KEY (id, timestamp)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + LEGACY_TABLE
+                + " FOR VALUES FROM (MINVALUE) TO ('" + BOUND_FORMAT.format(legacyUpper) + "')");
+    }
+
+    private void createPartitionsAhead() {
+        // Partitions are contiguous, so anything below the highest existing bound is already covered
+        LocalDateTime covered = listPartitions().values().stream().max(LocalDateTime::compareTo).orElse(LocalDateTime.MIN);
+        LocalDateTime start = periodStart(LocalDateTime.now());
+        for (int i = 0; i <= partitionsAhead; i++) {
+            LocalDateTime from = start.plus(i, interval.unit);
+            LocalDateTime to = from.plus(1, interval.unit);
+            if (from.isBefore(covered)) {
+                continue;
+            }
+            createPartition(from, to);
+        }
+    }
+
+    /**
+     * Creates the partition for one period. Postgres refuses while the DEFAULT partition holds
+     * rows of that period, so those are moved over with the default detached.
+     */
+    private void createPartition(LocalDateTime from, LocalDateTime to) {
+        String name = TABLE + "_p" + interval.suffix.format(from);
+        String range = "FROM ('" + BOUND_FORMAT.format(from) + "') TO ('" + BOUND_FORMAT.format(to) + "')";
+        Boolean stranded = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION
+                + " WHERE timestamp >= ? AND timestamp < ?)", Boolean.class, from, to);
+        if (!Boolean.TRUE.equals(stranded)) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + TABLE + " FOR VALUES " + range);
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + DEFAULT_PARTITION);
+        jdbcTemplate.execute("CREATE TABLE " + name + " PARTITION OF " + TABLE + " FOR VALUES " + range);
+        int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                + " WHERE timestamp >= ? AND timestamp < ? RETURNING *) INSERT INTO " + TABLE + " SELECT * FROM moved", from, to);
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + DEFAULT_PARTITION + " DEFAULT");
+        logger.warn("Moved {} delivery logs from {} into the new partition {}", moved, DEFAULT_PARTITION, name);
+    }
+
+    /**
+     * Returns each partition's name with its exclusive upper bound.
+     */
+    private Map<String, LocalDateTime> listPartitions() {
+        Map<String, LocalDateTime> partitions = new LinkedHashMap<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList(
+                "SELECT c.relname AS name, pg_get_expr(c.relpartbound, c.oid) AS bound "
+                        + "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "WHERE i.inhparent = '" + TABLE + "'::regclass")) {
+            Matcher upper = UPPER_BOUND.matcher((String) row.get("bound"));
+            if (upper.find()) {
+                partitions.put((String) row.get("name"), LocalDateTime.parse(upper.group(1).substring(0, 19), BOUND_FORMAT));
+            }
+        }
+        return partitions;
+    }
+
+    private boolean isPartitioned() {
+        Integer partitioned = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_partitioned_table WHERE partrelid = '" + TABLE + "'::regclass", Integer.class);
+        return partitioned != null && partitioned > 0;
+    }
+
+    private LocalDateTime periodStart(LocalDateTime time) {
+        return time.truncatedTo(interval.unit);
+    }
+
+    /**
+     * Serializes partition maintenance across nodes for the rest of the current transaction.
+     */
+    private void lock() {
+        jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?)::text", String.class, ADVISORY_LOCK_KEY);
+    }
+}
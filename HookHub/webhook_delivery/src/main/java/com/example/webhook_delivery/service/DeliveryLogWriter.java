@@ -0,0 +1,253 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.entity.WebhookDeliveryLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind pipeline for delivery attempts.
+ * <p>
+ * Workers append to a bounded ring buffer and block when it is full. A single flusher thread
+ * drains it into JDBC batch inserts once {@code batch-size} rows are waiting or
+ * {@code flush-interval-ms} has passed. IDs come from the entity's sequence in blocks of
+ * {@link #ID_BLOCK_SIZE}, matching Hibernate's pooled-lo optimizer, so one round trip
+ * covers a whole batch. On shutdown the buffer is drained before the context closes.
+ */
+@Service
+public class DeliveryLogWriter implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryLogWriter.class);
+
+    /** Must match the allocationSize of the sequence generator on {@link WebhookDeliveryLog}. */
+    static final int ID_BLOCK_SIZE = 50;
+
+    private static final String INSERT_SQL = "INSERT INTO webhook_delivery_log "
+            + "(id, delivery_task_id, subscription_id, target_url, timestamp, attempt_number, outcome, http_status_code, error_details, "
+            + "queue_wait_ms, http_ms, end_to_end_ms) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String NEXT_BLOCKS_SQL = "SELECT nextval('webhook_delivery_log_seq') FROM generate_series(1, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<Pending> buffer;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int maxFlushAttempts;
+    private final Counter blockedAppends;
+    private final Counter droppedRows;
+    private final Deque<Long> idPool = new ArrayDeque<>();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public DeliveryLogWriter(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.delivery-log.buffer-capacity}") int bufferCapacity,
+                             @Value("${app.delivery-log.batch-size}") int batchSize,
+                             @Value("${app.delivery-log.flush-interval-ms}") long flushIntervalMs,
+                             @Value("${app.delivery-log.max-flush-attempts}") int maxFlushAttempts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxFlushAttempts = maxFlushAttempts;
+        this.blockedAppends = Counter.builder("hookhub.delivery.log.blocked").register(meterRegistry);
+        this.droppedRows = Counter.builder("hookhub.delivery.log.dropped").register(meterRegistry);
+        meterRegistry.gauge("hookhub.delivery.log.buffered", buffer, BlockingQueue::size);
+    }
+
+    /**
+     * Queues a delivery attempt for persistence, blocking while the buffer is full.
+     *
+     * @return a future completed once the row's batch has been committed, or given up on
+     */
+    public CompletableFuture<Void> append(WebhookDeliveryLog log) {
+        Pending pending = new Pending(log, new CompletableFuture<>());
+        if (buffer.offer(pending)) {
+            return pending.written;
+        }
+        blockedAppends.increment();
+        try {
+            buffer.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedRows.increment();
+            logger.error("Interrupted while buffering log for task {}, attempt dropped", log.getDeliveryTaskId());
+            pending.written.complete(null);
+        }
+        return pending.written;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        flusher = new Thread(this::flushLoop, "delivery-log-flusher");
+        flusher.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the delivery engine so attempts recorded while it drains are still written.
+     */
+    @Override
+    public int getPhase() {
+        return DeliveryEngine.LIFECYCLE_PHASE - 1000;
+    }
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? buffer.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    buffer.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested, fall through to the final drain
+            }
+            flush(batch);
+        }
+
+        // Drain whatever is left so nothing accepted before shutdown is lost
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            flush(batch);
+        }
+        flush(batch);
+        logger.info("Delivery log writer drained");
+    }
+
+    private void flush(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<WebhookDeliveryLog> logs = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            logs.add(pending.log);
+        }
+        for (int attempt = 1; attempt <= maxFlushAttempts; attempt++) {
+            try {
+                assignIds(logs);
+                // One transaction per batch so a failed flush can be retried without duplicates
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, logs, logs.size(), (ps, log) -> {
+                    ps.setLong(1, log.getId());
+                    ps.setObject(2, log.getDeliveryTaskId());
+                    ps.setObject(3, log.getSubscriptionId());
+                    ps.setString(4, log.getTargetUrl());
+                    ps.setTimestamp(5, log.getTimestamp() != null ? Timestamp.valueOf(log.getTimestamp()) : null);
+                    ps.setInt(6, log.getAttemptNumber());
+                    ps.setString(7, log.getOutcome());
+                    if (log.getHttpStatusCode() != null) {
+                        ps.setInt(8, log.getHttpStatusCode());
+                    } else {
+                        ps.setNull(8, Types.INTEGER);
+                    }
+                    ps.setString(9, log.getErrorDetails());
+                    setNullableLong(ps, 10, log.getQueueWaitMs());
+                    setNullableLong(ps, 11, log.getHttpMs());
+                    setNullableLong(ps, 12, log.getEndToEndMs());
+                }));
+                complete(batch);
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Failed to write {} delivery logs (attempt {}/{}): {}",
+                        batch.size(), attempt, maxFlushAttempts, e.getMessage());
+                sleepBeforeRetry(attempt);
+            }
+        }
+        logger.error("Dropping {} delivery logs after {} failed flushes", batch.size(), maxFlushAttempts);
+        droppedRows.increment(batch.size());
+        // Still released: holding the messages back would only get the deliveries repeated
+        complete(batch);
+    }
+
+    private static void complete(List<Pending> batch) {
+        for (Pending pending : batch) {
+            pending.written.complete(null);
+        }
+        batch.clear();
+    }
+
+    private static void setNullableLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+
+    private void assignIds(List<WebhookDeliveryLog> batch) {
+        int missing = 0;
+        for (WebhookDeliveryLog log : batch) {
+            if (log.getId() == null) {
+                missing++;
+            }
+        }
+        if (missing > idPool.size()) {
+            int blocks = (missing - idPool.size() + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE;
+            for (Long low : jdbcTemplate.queryForList(NEXT_BLOCKS_SQL, Long.class, blocks)) {
+                for (long id = low; id < low + ID_BLOCK_SIZE; id++) {
+                    idPool.add(id);
+                }
+            }
+        }
+        for (WebhookDeliveryLog log : batch) {
+            if (log.getId() == null) {
+                log.setId(idPool.poll());
+            }
+        }
+    }
+
+    private record Pending(WebhookDeliveryLog log, CompletableFuture<Void> written) {
+    }
+
+    private void sleepBeforeRetry(int attempt) {
+        try {
+            Thread.sleep(Math.min(5000L, 200L * attempt * attempt));
+        } catch (InterruptedException e) {
+            // Keep retrying; shutdown still waits for the drain
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.config.MetricsConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the delivery side of the pipeline. Hosts and subscriptions are tagged as they
+ * are; {@link MetricsConfig} caps how many distinct values each tag can take.
+ */
+@Component
+@RequiredArgsConstructor
+public class DeliveryMetrics {
+
+    private static final int MAX_ATTEMPT_TAG = 5;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Time spent on one HTTP call.
+     *
+     * @param statusCode the response status, or {@code null} if no response came back
+     */
+    public void recordHttp(String host, Integer statusCode, long elapsedNanos) {
+        Timer.builder("hookhub.delivery.http")
+                .tag(MetricsConfig.HOST_TAG, host)
+                .tag("status", statusCode != null ? (statusCode / 100) + "xx" : "io_error")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts an attempt's outcome and, once the event is finished with, its time since ingest.
+     *
+     * @param ingestedAt epoch millis the event was accepted at, 0 if unknown
+     */
+    public void recordOutcome(UUID subscriptionId, int attempt, long ingestedAt, String outcome) {
+        Counter.builder("hookhub.delivery.attempts")
+                .tag(MetricsConfig.SUBSCRIPTION_TAG, String.valueOf(subscriptionId))
+                .tag("outcome", outcome)
+                .tag("attempt", attempt < MAX_ATTEMPT_TAG ? Integer.toString(attempt) : MAX_ATTEMPT_TAG + "+")
+                .register(meterRegistry)
+                .increment();
+        if (!"FAILED_ATTEMPT".equals(outcome) && ingestedAt > 0) {
+            Timer.builder("hookhub.delivery.end_to_end")
+                    .description("Time from ingest to the final delivery outcome")
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - ingestedAt)));
+        }
+    }
+
+    /**
+     * Time an event spent in one stage before an attempt: {@code broker} from publish to
+     * consume, {@code queue} from publish to the attempt starting, including the fair-share and
+     * per-host queues, and {@code first_attempt} from ingest to its first attempt.
+     */
+    public void recordStage(String stage, long elapsedMs) {
+        Timer.builder("hookhub.delivery.stage")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(Duration.ofMillis(Math.max(0, elapsedMs)));
+    }
+
+    public void recordParked(String host) {
+        Counter.builder("hookhub.delivery.parked")
+                .tag(MetricsConfig.HOST_TAG, host)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.rabbitmq.WebhookMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Transactional outbox for accepted events, so ingest does not depend on the broker.
+ * <p>
+ * Request threads queue messages and wait for their commit. A single writer thread group-commits
+ * whatever has queued up since its last flush, up to {@code batch-size} rows, in one batched
+ * insert, so concurrent requests share a transaction. {@link OutboxRelay} claims rows with a
+ * lease and deletes them once the broker has confirmed them. Only created with
+ * {@code app.outbox.enabled}.
+ */
+@Service
+@ConditionalOnProperty(name = "app.outbox.enabled")
+public class DeliveryOutbox implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryOutbox.class);
+
+    private static final String INSERT_SQL = "INSERT INTO delivery_outbox "
+            + "(delivery_task_id, subscription_id, event_type, payload, payload_ref, traceparent, created_at, available_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    // Pushes the lease out on due rows other relays have not locked, and returns them
+    private static final String CLAIM_SQL = "UPDATE delivery_outbox SET available_at = ? WHERE id IN ("
+            + "SELECT id FROM delivery_outbox WHERE available_at <= ? ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED) "
+            + "RETURNING id, delivery_task_id, subscription_id, event_type, payload, payload_ref, traceparent, created_at";
+    private static final String DELETE_SQL = "DELETE FROM delivery_outbox WHERE id = ANY (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PayloadStore payloadStore;
+    private final BlockingQueue<Pending> buffer;
+    private final int batchSize;
+    private final long commitTimeoutMs;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public DeliveryOutbox(JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          PayloadStore payloadStore,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.outbox.buffer-capacity}") int bufferCapacity,
+                          @Value("${app.outbox.batch-size}") int batchSize,
+                          @Value("${app.outbox.commit-timeout-ms}") long commitTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.payloadStore = payloadStore;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.batchSize = batchSize;
+        this.commitTimeoutMs = commitTimeoutMs;
+        meterRegistry.gauge("hookhub.outbox.buffered", buffer, BlockingQueue::size);
+    }
+
+    /**
+     * Stores the messages and waits for the commit. Large payloads are offloaded first so
+     * the rows only carry a reference.
+     *
+     * @return one flag per message, {@code true} once its row is committed
+     */
+    public List<Boolean> append(List<WebhookMessage> messages) {
+        payloadStore.offload(messages);
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(messages.size());
+        for (WebhookMessage message : messages) {
+            Pending pending = new Pending(message, new CompletableFuture<>());
+            if (!running || !buffer.offer(pending)) {
+                logger.warn("Outbox buffer unavailable, rejecting task {}", message.getDeliveryTaskId());
+                pending.committed.complete(false);
+            }
+            futures.add(pending.committed);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(commitTimeoutMs);
+        List<Boolean> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<Boolean> future : futures) {
+            results.add(await(future, deadline));
+        }
+        return results;
+    }
+
+    /**
+     * Claims up to {@code limit} rows for {@code leaseMs}. Rows not deleted within the lease
+     * are handed out again.
+     */
+    public List<Claimed> claim(int limit, long leaseMs) {
+        LocalDateTime now = LocalDateTime.now();
+        return jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new Claimed(rs.getLong("id"), new WebhookMessage(
+                        rs.getObject("delivery_task_id", UUID.class),
+                        rs.getObject("subscription_id", UUID.class),
+                        rs.getString("event_type"),
+                        rs.getBytes("payload"),
+                        1,
+                        rs.getString("payload_ref"),
+                        rs.getTimestamp("created_at").getTime(),
+                        0,
+                        0,
+                        rs.getString("traceparent"))),
+                Timestamp.valueOf(now.plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMs))), Timestamp.valueOf(now), limit);
+    }
+
+    /**
+     * Removes relayed rows in a single statement.
+     */
+    public void delete(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update((Connection con) -> {
+            PreparedStatement ps = con.prepareStatement(DELETE_SQL);
+            Array array = con.createArrayOf("bigint", ids.toArray());
+            ps.setArray(1, array);
+            return ps;
+        });
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::writeLoop, "delivery-outbox-writer");
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the embedded web server so requests it is still completing can be written.
+     */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 4096;
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(buffer.take());
+                buffer.drainTo(batch, batchSize - 1);
+            } catch (InterruptedException e) {
+                // Shutdown requested, fall through to the final drain
+            }
+            write(batch);
+        }
+
+        // Requests still waiting get their answer instead of a timeout
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            write(batch);
+        }
+        logger.info("Delivery outbox writer drained");
+    }
+
+    private void write(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        boolean committed = false;
+        try {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, pending) -> {
+                WebhookMessage message = pending.message;
+                ps.setObject(1, message.getDeliveryTaskId());
+                ps.setObject(2, message.getSubscriptionId());
+                ps.setString(3, message.getEventType());
+                ps.setBytes(4, message.getPayload());
+                ps.setString(5, message.getPayloadRef());
+                ps.setString(6, message.getTraceparent());
+                ps.setTimestamp(7, message.getIngestedAt() > 0 ? new Timestamp(message.getIngestedAt()) : now);
+                ps.setTimestamp(8, now);
+            }));
+            committed = true;
+        } catch (RuntimeException e) {
+            // Not retried: the callers are waiting and report the failure to their clients
+            logger.error("Failed to write {} outbox rows: {}", batch.size(), e.getMessage());
+        }
+        for (Pending pending : batch) {
+            pending.committed.complete(committed);
+        }
+        batch.clear();
+    }
+
+    private boolean await(CompletableFuture<Boolean> future, long deadlineNanos) {
+        try {
+            long remaining = Math.max(0, deadlineNanos - System.nanoTime());
+            return future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // The row may still be written and relayed later; the client only sees a failure
+            logger.warn("Timed out waiting for outbox commit");
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private record Pending(WebhookMessage message, CompletableFuture<Boolean> committed) {
+    }
+
+    public record Claimed(long id, WebhookMessage message) {
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.config.RabbitMQConfig;
+import com.example.webhook_delivery.rabbitmq.DeliveryShards;
+import com.example.webhook_delivery.rabbitmq.WebhookMessage;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Single place where delivery messages are put on the broker. Each message goes to its
+ * subscription's shard, and large payloads are moved to the {@link PayloadStore} first.
+ */
+@Service
+@RequiredArgsConstructor
+public class DeliveryPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryPublisher.class);
+
+    private final RabbitTemplate rabbitTemplate;
+    private final PayloadStore payloadStore;
+
+    @Value("${app.rabbitmq.exchange}")
+    private String exchangeName;
+
+    @Value("${app.rabbitmq.routingkey}")
+    private String routingKey;
+
+    @Value("${app.rabbitmq.shards}")
+    private int shards;
+
+    @Value("${app.rabbitmq.confirm-timeout-ms}")
+    private long confirmTimeoutMs;
+
+    public void publish(WebhookMessage message) {
+        payloadStore.offload(List.of(message));
+        message.setEnqueuedAt(System.currentTimeMillis());
+        rabbitTemplate.convertAndSend(exchangeName, routingKeyFor(message), message);
+    }
+
+    /**
+     * Publishes all messages on one channel and waits for the broker to confirm them.
+     *
+     * @return one flag per message, {@code true} when the broker confirmed and routed it
+     */
+    public List<Boolean> publishConfirmed(List<WebhookMessage> messages) {
+        return publishConfirmed(messages, exchangeName, this::routingKeyFor);
+    }
+
+    /**
+     * Publishes the message into its shard's 10s broker retry queue and waits for the confirm;
+     * the fallback when the {@link RetryScheduler} cannot take a retry.
+     *
+     * @return {@code true} when the broker confirmed and routed it
+     */
+    public boolean publishToRetryQueue(WebhookMessage message) {
+        return publishConfirmed(List.of(message), RabbitMQConfig.DLX_EXCHANGE, m -> DeliveryShards.retryRoutingKey(
+                RabbitMQConfig.QUEUE_RETRY_10S, DeliveryShards.shardOf(m.getSubscriptionId(), shards))).get(0);
+    }
+
+    private List<Boolean> publishConfirmed(List<WebhookMessage> messages, String exchange,
+                                           Function<WebhookMessage, String> routing) {
+        payloadStore.offload(messages);
+        long now = System.currentTimeMillis();
+        for (WebhookMessage message : messages) {
+            message.setEnqueuedAt(now);
+        }
+        List<CorrelationData> correlations = new ArrayList<>(messages.size());
+        rabbitTemplate.invoke(operations -> {
+            for (WebhookMessage message : messages) {
+                CorrelationData correlation = new CorrelationData(message.getDeliveryTaskId().toString());
+                try {
+                    operations.convertAndSend(exchange, routing.apply(message), message, correlation);
+                    correlations.add(correlation);
+                } catch (AmqpException e) {
+                    logger.error("Failed to publish task {}: {}", message.getDeliveryTaskId(), e.getMessage());
+                    correlations.add(null);
+                }
+            }
+            return null;
+        });
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+        List<Boolean> results = new ArrayList<>(messages.size());
+        for (CorrelationData correlation : correlations) {
+            results.add(correlation != null && awaitConfirm(correlation, deadline));
+        }
+        return results;
+    }
+
+    /**
+     * Publishes without waiting for the broker.
+     *
+     * @return completed with {@code true} once the broker confirmed and routed the message,
+     *         with {@code false} if it did not within the confirm timeout
+     */
+    public CompletableFuture<Boolean> publishAsync(WebhookMessage message) {
+        payloadStore.offload(List.of(message));
+        message.setEnqueuedAt(System.currentTimeMillis());
+        CorrelationData correlation = new CorrelationData(message.getDeliveryTaskId().toString());
+        try {
+            rabbitTemplate.convertAndSend(exchangeName, routingKeyFor(message), message, correlation);
+        } catch (AmqpException e) {
+            logger.error("Failed to publish task {}: {}", message.getDeliveryTaskId(), e.getMessage());
+            return CompletableFuture.completedFuture(false);
+        }
+        return correlation.getFuture()
+                .orTimeout(confirmTimeoutMs, TimeUnit.MILLISECONDS)
+                .handle((confirm, error) -> {
+                    if (error != null) {
+                        logger.warn("No broker confirm for task {}: {}", correlation.getId(), error.toString());
+                        return false;
+                    }
+                    return isConfirmed(correlation, confirm);
+                });
+    }
+
+    private boolean awaitConfirm(CorrelationData correlation, long deadlineNanos) {
+        try {
+            long remaining = Math.max(0, deadlineNanos - System.nanoTime());
+            return isConfirmed(correlation, correlation.getFuture().get(remaining, TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            logger.warn("Timed out waiting for broker confirm of task {}", correlation.getId());
+            return false;
+        } catch (ExecutionException e) {
+            logger.error("Confirm failed for task {}: {}", correlation.getId(), e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private String routingKeyFor(WebhookMessage message) {
+        return DeliveryShards.routingKey(routingKey, DeliveryShards.shardOf(message.getSubscriptionId(), shards));
+    }
+
+    private static boolean isConfirmed(CorrelationData correlation, CorrelationData.Confirm confirm) {
+        if (!confirm.isAck()) {
+            logger.warn("Broker nacked task {}: {}", correlation.getId(), confirm.getReason());
+            return false;
+        }
+        if (correlation.getReturned() != null) {
+            logger.warn("Task {} was unroutable: {}", correlation.getId(), correlation.getReturned().getReplyText());
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.config.NodeIdentity;
+import com.example.webhook_delivery.config.RabbitMQConfig;
+import com.example.webhook_delivery.rabbitmq.DeliveryShards;
+import com.rabbitmq.client.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareBatchMessageListener;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads the delivery shards over the nodes that are up.
+ * <p>
+ * Nodes heartbeat into a Redis sorted set, and each one consumes the shards rendezvous hashing
+ * assigns it among the live members, so shards move when nodes join or leave. A shard being
+ * handed over stops taking new batches and only cancels its consumer once what it already took
+ * has been settled; the queue's single active consumer setting keeps the new owner on standby
+ * until then, so a subscription's messages are never consumed by two nodes at once. Without
+ * Redis every node keeps its shards, or takes all of them on startup.
+ */
+@Service
+public class DeliveryShardCoordinator implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryShardCoordinator.class);
+
+    static final String NODES_KEY = "hookhub:delivery-nodes";
+
+    private final RabbitListenerEndpointRegistry registry;
+    private final SimpleRabbitListenerContainerFactory containerFactory;
+    private final WebhookDeliveryWorker worker;
+    private final StringRedisTemplate redisTemplate;
+    private final String nodeId;
+    private final String baseQueue;
+    private final long nodeTtlMs;
+    private final long shutdownTimeoutMs;
+    private final Shard[] shards;
+
+    private volatile boolean running;
+
+    public DeliveryShardCoordinator(RabbitListenerEndpointRegistry registry,
+                                    @Qualifier(RabbitMQConfig.DELIVERY_LISTENER_FACTORY) SimpleRabbitListenerContainerFactory containerFactory,
+                                    WebhookDeliveryWorker worker,
+                                    StringRedisTemplate redisTemplate,
+                                    NodeIdentity nodeIdentity,
+                                    @Value("${app.rabbitmq.queue}") String baseQueue,
+                                    @Value("${app.rabbitmq.shards}") int shardCount,
+                                    @Value("${app.rabbitmq.node-ttl-ms}") long nodeTtlMs,
+                                    @Value("${app.delivery.shutdown-timeout-seconds}") long shutdownTimeoutSeconds) {
+        this.registry = registry;
+        this.containerFactory = containerFactory;
+        this.worker = worker;
+        this.redisTemplate = redisTemplate;
+        this.nodeId = nodeIdentity.getId();
+        this.baseQueue = baseQueue;
+        this.nodeTtlMs = nodeTtlMs;
+        this.shutdownTimeoutMs = TimeUnit.SECONDS.toMillis(shutdownTimeoutSeconds);
+        this.shards = new Shard[shardCount];
+    }
+
+    @Override
+    public void start() {
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i, register(i));
+        }
+        running = true;
+        rebalance();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        for (Shard shard : shards) {
+            shard.container.stop();
+        }
+        try {
+            redisTemplate.opsForZSet().remove(NODES_KEY, nodeId);
+        } catch (Exception e) {
+            logger.warn("Failed to leave the delivery node set: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops consuming before the scheduler and engine stop, once the worker has drained.
+     */
+    @Override
+    public int getPhase() {
+        return DeliveryEngine.LIFECYCLE_PHASE + 1000;
+    }
+
+    /**
+     * Refreshes this node's heartbeat and starts or releases shards to match the live members.
+     */
+    @Scheduled(fixedDelayString = "${app.rabbitmq.shard-rebalance-interval-ms}")
+    public synchronized void rebalance() {
+        if (!running) {
+            return;
+        }
+        Collection<String> nodes = liveNodes();
+        for (Shard shard : shards) {
+            if (nodes == null) {
+                // Membership unknown: keep what we have, but never leave a fresh node idle
+                if (!shard.container.isRunning() && !anyRunning()) {
+                    shard.take();
+                }
+                shard.releaseIfSettled();
+            } else if (nodeId.equals(DeliveryShards.ownerOf(shard.index, nodes))) {
+                shard.take();
+            } else {
+                shard.release();
+            }
+        }
+    }
+
+    private Collection<String> liveNodes() {
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForZSet().add(NODES_KEY, nodeId, now);
+            redisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, Double.NEGATIVE_INFINITY, now - nodeTtlMs);
+            Set<String> nodes = redisTemplate.opsForZSet().range(NODES_KEY, 0, -1);
+            return nodes != null && nodes.contains(nodeId) ? nodes : null;
+        } catch (Exception e) {
+            logger.warn("Failed to refresh delivery node membership: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean anyRunning() {
+        for (Shard shard : shards) {
+            if (shard.container.isRunning()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private MessageListenerContainer register(int shard) {
+        SimpleRabbitListenerEndpoint endpoint = new SimpleRabbitListenerEndpoint();
+        endpoint.setId("delivery-shard-" + shard);
+        endpoint.setQueueNames(DeliveryShards.queueName(baseQueue, shard));
+        endpoint.setBatchListener(true);
+        endpoint.setAutoStartup(false);
+        endpoint.setMessageListener(new ChannelAwareBatchMessageListener() {
+            @Override
+            public void onMessageBatch(List<Message> batch, Channel channel) {
+                shards[shard].onBatch(batch, channel);
+            }
+        });
+        registry.registerListenerContainer(endpoint, containerFactory, false);
+        return registry.getListenerContainer(endpoint.getId());
+    }
+
+    private final class Shard {
+        private final int index;
+        private final MessageListenerContainer container;
+        private final AtomicInteger unsettledBatches = new AtomicInteger();
+        private volatile boolean releasing;
+        private long releaseDeadline;
+
+        private Shard(int index, MessageListenerContainer container) {
+            this.index = index;
+            this.container = container;
+        }
+
+        void onBatch(List<Message> batch, Channel channel) {
+            if (releasing) {
+                // Back to the queue for the next owner, behind what is still in flight here
+                worker.requeue(batch, channel);
+                return;
+            }
+            unsettledBatches.incrementAndGet();
+            worker.handleDeliveries(batch, channel).whenComplete((ignored, error) -> unsettledBatches.decrementAndGet());
+        }
+
+        void take() {
+            releasing = false;
+            if (!container.isRunning()) {
+                logger.info("Consuming delivery shard {}", index);
+                container.start();
+            }
+        }
+
+        void release() {
+            if (!container.isRunning()) {
+                return;
+            }
+            if (!releasing) {
+                logger.info("Handing over delivery shard {}", index);
+                releasing = true;
+                releaseDeadline = System.currentTimeMillis() + shutdownTimeoutMs;
+            }
+            releaseIfSettled();
+        }
+
+        void releaseIfSettled() {
+            if (!releasing || !container.isRunning()) {
+                return;
+            }
+            if (unsettledBatches.get() == 0 || System.currentTimeMillis() > releaseDeadline) {
+                container.stop();
+                releasing = false;
+                logger.info("Released delivery shard {}", index);
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.dto.SubscriptionStatsDto;
+import com.example.webhook_delivery.entity.WebhookDeliveryLog;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-subscription, per-minute delivery statistics. Attempts are counted in memory as the
+ * worker finishes them and added onto {@code delivery_stats_rollup} rows on a schedule, so
+ * window queries read one row per minute instead of scanning the delivery log.
+ */
+@Service
+public class DeliveryStatsAggregator {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryStatsAggregator.class);
+
+    // Rows are added onto, not replaced, so several nodes can flush the same minute
+    private static final String UPSERT_SQL = "INSERT INTO delivery_stats_rollup AS r "
+            + "(subscription_id, bucket_start, attempts, successes, failed_attempts, failures, "
+            + "status2xx, status3xx, status4xx, status5xx, no_response, http_ms_total, latency_buckets) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (subscription_id, bucket_start) DO UPDATE SET "
+            + "attempts = r.attempts + EXCLUDED.attempts, "
+            + "successes = r.successes + EXCLUDED.successes, "
+            + "failed_attempts = r.failed_attempts + EXCLUDED.failed_attempts, "
+            + "failures = r.failures + EXCLUDED.failures, "
+            + "status2xx = r.status2xx + EXCLUDED.status2xx, "
+            + "status3xx = r.status3xx + EXCLUDED.status3xx, "
+            + "status4xx = r.status4xx + EXCLUDED.status4xx, "
+            + "status5xx = r.status5xx + EXCLUDED.status5xx, "
+            + "no_response = r.no_response + EXCLUDED.no_response, "
+            + "http_ms_total = r.http_ms_total + EXCLUDED.http_ms_total, "
+            + "latency_buckets = (SELECT array_agg(coalesce(a, 0) + coalesce(b, 0) ORDER BY i) "
+            + "FROM unnest(r.latency_buckets, EXCLUDED.latency_buckets) WITH ORDINALITY AS t(a, b, i))";
+    private static final String TOTALS_SQL = "SELECT coalesce(sum(attempts), 0) AS attempts, "
+            + "coalesce(sum(successes), 0) AS successes, coalesce(sum(failed_attempts), 0) AS failed_attempts, "
+            + "coalesce(sum(failures), 0) AS failures, coalesce(sum(status2xx), 0) AS status2xx, "
+            + "coalesce(sum(status3xx), 0) AS status3xx, coalesce(sum(status4xx), 0) AS status4xx, "
+            + "coalesce(sum(status5xx), 0) AS status5xx, coalesce(sum(no_response), 0) AS no_response, "
+            + "coalesce(sum(http_ms_total), 0) AS http_ms_total "
+            + "FROM delivery_stats_rollup WHERE subscription_id = ? AND bucket_start >= ?";
+    private static final String BUCKETS_SQL = "SELECT t.i, sum(t.b) FROM delivery_stats_rollup r "
+            + "CROSS JOIN LATERAL unnest(r.latency_buckets) WITH ORDINALITY AS t(b, i) "
+            + "WHERE r.subscription_id = ? AND r.bucket_start >= ? GROUP BY t.i";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration maxWindow;
+    private final Map<Key, MinuteStats> pending = new ConcurrentHashMap<>();
+
+    public DeliveryStatsAggregator(JdbcTemplate jdbcTemplate,
+                                   @Value("${app.stats.max-window-hours}") long maxWindowHours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxWindow = Duration.ofHours(maxWindowHours);
+    }
+
+    private record Key(UUID subscriptionId, LocalDateTime bucketStart) {
+    }
+
+    /**
+     * Counts one finished attempt into the minute it was logged in.
+     */
+    public void record(WebhookDeliveryLog log) {
+        if (log.getSubscriptionId() == null || log.getTimestamp() == null) {
+            return;
+        }
+        Key key = new Key(log.getSubscriptionId(), log.getTimestamp().truncatedTo(ChronoUnit.MINUTES));
+        // Updated inside compute so a flush removing the entry never loses an attempt
+        pending.compute(key, (k, stats) -> {
+            MinuteStats updated = stats != null ? stats : new MinuteStats();
+            updated.add(log);
+            return updated;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.stats.flush-interval-ms}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Key, MinuteStats>> batch = new ArrayList<>(pending.size());
+        for (Key key : pending.keySet()) {
+            MinuteStats stats = pending.remove(key);
+            if (stats != null) {
+                batch.add(Map.entry(key, stats));
+            }
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, batch, batch.size(), (ps, entry) -> {
+                MinuteStats stats = entry.getValue();
+                ps.setObject(1, entry.getKey().subscriptionId());
+                ps.setTimestamp(2, Timestamp.valueOf(entry.getKey().bucketStart()));
+                ps.setLong(3, stats.attempts);
+                ps.setLong(4, stats.successes);
+                ps.setLong(5, stats.failedAttempts);
+                ps.setLong(6, stats.failures);
+                ps.setLong(7, stats.status2xx);
+                ps.setLong(8, stats.status3xx);
+                ps.setLong(9, stats.status4xx);
+                ps.setLong(10, stats.status5xx);
+                ps.setLong(11, stats.noResponse);
+                ps.setLong(12, stats.httpMsTotal);
+                long[] counts = stats.latency.counts();
+                Long[] boxed = new Long[counts.length];
+                for (int i = 0; i < counts.length; i++) {
+                    boxed[i] = counts[i];
+                }
+                ps.setArray(13, ps.getConnection().createArrayOf("bigint", boxed));
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Failed to flush {} stats rollups, keeping them for the next flush: {}", batch.size(), e.getMessage());
+            for (Map.Entry<Key, MinuteStats> entry : batch) {
+                pending.merge(entry.getKey(), entry.getValue(), MinuteStats::merge);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Totals for a subscription from the start of the minute {@code window} ago until now. Only
+     * flushed minutes are seen, so the latest {@code flush-interval-ms} may be missing.
+     */
+    public SubscriptionStatsDto stats(UUID subscriptionId, Duration window) {
+        if (window.compareTo(maxWindow) > 0) {
+            throw new IllegalArgumentException("Window is longer than the maximum of " + maxWindow.toHours() + "h");
+        }
+        LocalDateTime to = LocalDateTime.now();
+        LocalDateTime from = to.minus(window).truncatedTo(ChronoUnit.MINUTES);
+        Timestamp since = Timestamp.valueOf(from);
+
+        long[] httpMsTotal = new long[1];
+        SubscriptionStatsDto dto = jdbcTemplate.queryForObject(TOTALS_SQL, (rs, rowNum) -> {
+            SubscriptionStatsDto totals = new SubscriptionStatsDto();
+            totals.setAttempts(rs.getLong("attempts"));
+            totals.setSuccesses(rs.getLong("successes"));
+            totals.setFailedAttempts(rs.getLong("failed_attempts"));
+            totals.setFailures(rs.getLong("failures"));
+            totals.setStatus2xx(rs.getLong("status2xx"));
+            totals.setStatus3xx(rs.getLong("status3xx"));
+            totals.setStatus4xx(rs.getLong("status4xx"));
+            totals.setStatus5xx(rs.getLong("status5xx"));
+            totals.setNoResponse(rs.getLong("no_response"));
+            httpMsTotal[0] = rs.getLong("http_ms_total");
+            return totals;
+        }, subscriptionId, since);
+        dto.setSubscriptionId(subscriptionId);
+        dto.setFrom(from);
+        dto.setTo(to);
+        if (dto.getAttempts() > 0) {
+            dto.setSuccessRate((double) dto.getSuccesses() / dto.getAttempts());
+        }
+
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        jdbcTemplate.query(BUCKETS_SQL, rs -> {
+            int index = rs.getInt(1) - 1; // ORDINALITY is 1-based
+            if (index >= 0 && index < counts.length) {
+                counts[index] = rs.getLong(2);
+            }
+        }, subscriptionId, since);
+        LatencyHistogram latency = LatencyHistogram.of(counts);
+        dto.setMeanHttpMs(latency.count() > 0 ? httpMsTotal[0] / latency.count() : null);
+        dto.setP50HttpMs(latency.valueAt(0.50));
+        dto.setP95HttpMs(latency.valueAt(0.95));
+        dto.setP99HttpMs(latency.valueAt(0.99));
+        return dto;
+    }
+
+    /**
+     * Deletes rollup rows for minutes before the cutoff.
+     *
+     * @return the number of rows deleted
+     */
+    public int deleteBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM delivery_stats_rollup WHERE bucket_start < ?", Timestamp.valueOf(cutoff));
+    }
+
+    private static final class MinuteStats {
+        long attempts;
+        long successes;
+        long failedAttempts;
+        long failures;
+        long status2xx;
+        long status3xx;
+        long status4xx;
+        long status5xx;
+        long noResponse;
+        long httpMsTotal;
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        void add(WebhookDeliveryLog log) {
+            attempts++;
+            if ("SUCCESS".equals(log.getOutcome())) {
+                successes++;
+            } else if ("FAILED_ATTEMPT".equals(log.getOutcome())) {
+                failedAttempts++;
+            } else {
+                failures++;
+            }
+            Integer status = log.getHttpStatusCode();
+            if (status == null) {
+                noResponse++;
+            } else if (status >= 500) {
+                status5xx++;
+            } else if (status >= 400) {
+                status4xx++;
+            } else if (status >= 300) {
+                status3xx++;
+            } else {
+                status2xx++;
+            }
+            if (log.getHttpMs() != null) {
+                httpMsTotal += log.getHttpMs();
+                latency.record(log.getHttpMs());
+            }
+        }
+
+        MinuteStats merge(MinuteStats other) {
+            attempts += other.attempts;
+            successes += other.successes;
+            failedAttempts += other.failedAttempts;
+            failures += other.failures;
+            status2xx += other.status2xx;
+            status3xx += other.status3xx;
+            status4xx += other.status4xx;
+            status5xx += other.status5xx;
+            noResponse += other.noResponse;
+            httpMsTotal += other.httpMsTotal;
+            latency.merge(other.latency);
+            return this;
+        }
+    }
+}
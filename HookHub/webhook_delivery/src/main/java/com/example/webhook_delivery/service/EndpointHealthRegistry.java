@@ -0,0 +1,268 @@
+package com.example.webhook_delivery.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the health of each target host from delivery outcomes.
+ * <p>
+ * Every host has a circuit breaker (closed, open, half-open) driven by the failure rate over
+ * its last {@code sliding-window-size} calls, and an AIMD concurrency limit: each healthy call
+ * adds {@code 1 / limit}, so it grows by about one per {@code limit} healthy calls, and it
+ * shrinks multiplicatively on failures or when latency rises above {@code latency-tolerance}
+ * times that host's baseline latency. Closed hosts that see no calls for
+ * {@code idle-eviction-ms} are forgotten, so the registry does not grow with every host ever
+ * targeted.
+ * <p>
+ * Every permit taken while half-open must end in {@link #recordSuccess}, {@link #recordFailure}
+ * or {@link #releasePermission}; probes still out after {@code probe-timeout-ms} are written
+ * off and the breaker opens again, so a lost probe cannot hold it half-open.
+ */
+@Service
+public class EndpointHealthRegistry {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final ConcurrentHashMap<String, HostHealth> hosts = new ConcurrentHashMap<>();
+
+    private final int maxLimit;
+    private final int minLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationMs;
+    private final int halfOpenProbes;
+    private final long probeTimeoutMs;
+    private final long idleEvictionMs;
+
+    public EndpointHealthRegistry(@Value("${app.delivery.max-per-host}") int maxLimit,
+                                  @Value("${app.delivery.adaptive.min-limit}") int minLimit,
+                                  @Value("${app.delivery.adaptive.backoff-ratio}") double backoffRatio,
+                                  @Value("${app.delivery.adaptive.latency-tolerance}") double latencyTolerance,
+                                  @Value("${app.circuit-breaker.sliding-window-size}") int windowSize,
+                                  @Value("${app.circuit-breaker.minimum-calls}") int minimumCalls,
+                                  @Value("${app.circuit-breaker.failure-rate-threshold}") double failureRateThreshold,
+                                  @Value("${app.circuit-breaker.open-duration-ms}") long openDurationMs,
+                                  @Value("${app.circuit-breaker.half-open-probes}") int halfOpenProbes,
+                                  @Value("${app.circuit-breaker.probe-timeout-ms}") long probeTimeoutMs,
+                                  @Value("${app.circuit-breaker.idle-eviction-ms}") long idleEvictionMs) {
+        this.maxLimit = maxLimit;
+        this.minLimit = minLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationMs = openDurationMs;
+        this.halfOpenProbes = halfOpenProbes;
+        this.probeTimeoutMs = probeTimeoutMs;
+        this.idleEvictionMs = idleEvictionMs;
+    }
+
+    /**
+     * Returns {@code true} when a call to the host may go ahead. While the breaker is open this
+     * is {@code false}; once the open period has passed a few probe calls are let through.
+     */
+    public boolean tryAcquirePermission(String host) {
+        return health(host).tryAcquirePermission();
+    }
+
+    /**
+     * Milliseconds until an open breaker will let probes through again, 0 if not open.
+     */
+    public long remainingOpenMs(String host) {
+        return health(host).remainingOpenMs();
+    }
+
+    public int concurrencyLimit(String host) {
+        HostHealth health = hosts.get(host);
+        return health == null ? maxLimit : health.limit();
+    }
+
+    public void recordSuccess(String host, long latencyMs) {
+        health(host).record(true, latencyMs);
+    }
+
+    public void recordFailure(String host, long latencyMs) {
+        health(host).record(false, latencyMs);
+    }
+
+    /**
+     * Gives back a permit whose call never happened, so a half-open breaker can probe again.
+     */
+    public void releasePermission(String host) {
+        health(host).releasePermission();
+    }
+
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> view = new LinkedHashMap<>();
+        hosts.forEach((host, health) -> view.put(host, health.describe()));
+        return view;
+    }
+
+    /**
+     * Drops closed hosts idle for longer than {@code idle-eviction-ms}; a host that comes back
+     * starts over at the full limit. Open and half-open ones are kept until they close.
+     */
+    @Scheduled(fixedDelayString = "${app.circuit-breaker.idle-eviction-ms}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        hosts.forEach((host, health) -> {
+            if (health.idleSince(now)) {
+                hosts.remove(host, health);
+            }
+        });
+    }
+
+    private HostHealth health(String host) {
+        return hosts.computeIfAbsent(host, h -> new HostHealth());
+    }
+
+    private final class HostHealth {
+        private final boolean[] window = new boolean[windowSize];
+        private int windowCount;
+        private int windowIndex;
+        private int failures;
+
+        private State state = State.CLOSED;
+        private long openUntil;
+        private int probesIssued;
+        private int probesSucceeded;
+        private long lastProbeAt;
+
+        private double limit = maxLimit;
+        private double bestLatencyMs = Double.MAX_VALUE;
+        private long lastUsedAt = System.currentTimeMillis();
+
+        synchronized boolean tryAcquirePermission() {
+            long now = System.currentTimeMillis();
+            lastUsedAt = now;
+            expireProbes(now);
+            if (state == State.OPEN) {
+                if (now < openUntil) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probesIssued = 0;
+                probesSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesIssued >= halfOpenProbes) {
+                    return false;
+                }
+                probesIssued++;
+                lastProbeAt = now;
+            }
+            return true;
+        }
+
+        synchronized void releasePermission() {
+            if (state == State.HALF_OPEN && probesIssued > probesSucceeded) {
+                probesIssued--;
+            }
+        }
+
+        synchronized long remainingOpenMs() {
+            long now = System.currentTimeMillis();
+            expireProbes(now);
+            return state == State.OPEN ? Math.max(0, openUntil - now) : 0;
+        }
+
+        /**
+         * Opens again if every probe went out and the newest is overdue, since its outcome is
+         * not coming any more.
+         */
+        private void expireProbes(long now) {
+            if (state == State.HALF_OPEN && probesIssued >= halfOpenProbes && now - lastProbeAt > probeTimeoutMs) {
+                open();
+            }
+        }
+
+        synchronized int limit() {
+            return (int) limit;
+        }
+
+        synchronized boolean idleSince(long now) {
+            return state == State.CLOSED && now - lastUsedAt >= idleEvictionMs;
+        }
+
+        synchronized void record(boolean success, long latencyMs) {
+            lastUsedAt = System.currentTimeMillis();
+            if (state == State.HALF_OPEN) {
+                if (!success) {
+                    open();
+                } else if (++probesSucceeded >= halfOpenProbes) {
+                    close();
+                }
+            } else if (state == State.CLOSED) {
+                addToWindow(success);
+                if (windowCount >= minimumCalls && failures * 100.0 / windowCount >= failureRateThreshold) {
+                    open();
+                }
+            }
+            adjustLimit(success, latencyMs);
+        }
+
+        private void adjustLimit(boolean success, long latencyMs) {
+            if (success) {
+                long sample = Math.max(1, latencyMs);
+                // Drift slowly upwards so one unusually fast response doesn't pin the baseline forever
+                bestLatencyMs = sample < bestLatencyMs ? sample : bestLatencyMs + (sample - bestLatencyMs) * 0.01;
+            }
+            boolean congested = !success || latencyMs > bestLatencyMs * latencyTolerance;
+            if (congested) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+
+        private void addToWindow(boolean success) {
+            if (windowCount == window.length) {
+                if (!window[windowIndex]) {
+                    failures--;
+                }
+            } else {
+                windowCount++;
+            }
+            window[windowIndex] = success;
+            if (!success) {
+                failures++;
+            }
+            windowIndex = (windowIndex + 1) % window.length;
+        }
+
+        private void open() {
+            state = State.OPEN;
+            openUntil = System.currentTimeMillis() + openDurationMs;
+            limit = minLimit;
+        }
+
+        private void close() {
+            state = State.CLOSED;
+            windowCount = 0;
+            windowIndex = 0;
+            failures = 0;
+        }
+
+        synchronized Map<String, Object> describe() {
+            Map<String, Object> view = new LinkedHashMap<>();
+            view.put("state", state);
+            view.put("failureRate", windowCount == 0 ? 0.0 : failures * 100.0 / windowCount);
+            view.put("calls", windowCount);
+            view.put("concurrencyLimit", (int) limit);
+            view.put("baselineLatencyMs", bestLatencyMs == Double.MAX_VALUE ? null : Math.round(bestLatencyMs));
+            if (state == State.OPEN) {
+                view.put("retryInMs", Math.max(0, openUntil - System.currentTimeMillis()));
+            }
+            return view;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.entity.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Fair scheduler between the Rabbit consumer and the delivery engine.
+ * <p>
+ * Every subscription gets its own sub-queue, served by deficit round-robin: each turn a queue
+ * earns {@code quantum} units of credit and may dispatch jobs while their cost (derived from
+ * payload size) fits in its credit. A queue is skipped, without earning credit, while its
+ * token bucket ({@code maxRps}) is empty or it already has {@code maxConcurrency} jobs running.
+ * A burst from one subscription therefore only delays that subscription.
+ */
+@Service
+public class FairDeliveryScheduler implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(FairDeliveryScheduler.class);
+    private static final long MAX_IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int quantum;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<UUID, SubscriptionQueue> queues = new HashMap<>();
+    private final Deque<SubscriptionQueue> active = new ArrayDeque<>();
+    private final List<SubscriptionQueue> refilling = new ArrayList<>(); // Idle, kept until their bucket is full
+
+    private volatile boolean running;
+    private Thread dispatcher;
+
+    public FairDeliveryScheduler(@Value("${app.scheduler.quantum}") int quantum) {
+        this.quantum = quantum;
+    }
+
+    /**
+     * Queues a job for the subscription. {@code dispatch} starts the delivery and is invoked on
+     * the dispatcher thread once the subscription's turn, rate and concurrency allow it.
+     *
+     * @param cost relative weight of the job, at least 1
+     * @return a future completed with the dispatched delivery's outcome
+     */
+    public CompletableFuture<Void> schedule(Subscription subscription, int cost, Supplier<CompletableFuture<Void>> dispatch) {
+        Job job = new Job(Math.max(1, cost), dispatch);
+        lock.lock();
+        try {
+            if (!running) {
+                job.future.completeExceptionally(new CancellationException("Scheduler is stopped"));
+                return job.future;
+            }
+            SubscriptionQueue queue = queues.computeIfAbsent(subscription.getId(), SubscriptionQueue::new);
+            queue.configure(subscription.getMaxRps(), subscription.getMaxConcurrency());
+            queue.jobs.add(job);
+            if (!queue.active) {
+                queue.active = true;
+                active.addLast(queue);
+            }
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        return job.future;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "delivery-scheduler");
+        dispatcher.start();
+    }
+
+    @Override
+    public void stop() {
+        lock.lock();
+        try {
+            running = false;
+            // Unsettled messages go back to the broker when their channel closes
+            int cancelled = 0;
+            for (SubscriptionQueue queue : queues.values()) {
+                cancelled += queue.jobs.size();
+                for (Job job : queue.jobs) {
+                    job.future.completeExceptionally(new CancellationException("Scheduler is stopping"));
+                }
+                queue.jobs.clear();
+            }
+            active.clear();
+            changed.signalAll();
+            logger.info("Delivery scheduler stopped, {} queued deliveries returned to the broker", cancelled);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops before the delivery engine, which then drains what was already dispatched.
+     */
+    @Override
+    public int getPhase() {
+        return DeliveryEngine.LIFECYCLE_PHASE + 500;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            List<Dispatch> ready = nextRound();
+            for (Dispatch dispatch : ready) {
+                start(dispatch);
+            }
+        }
+    }
+
+    /**
+     * Runs one deficit round-robin pass, waiting while no queue is eligible.
+     */
+    private List<Dispatch> nextRound() {
+        List<Dispatch> ready = new ArrayList<>();
+        lock.lock();
+        try {
+            while (running && ready.isEmpty()) {
+                long now = System.nanoTime();
+                long waitNanos = MAX_IDLE_WAIT_NANOS;
+                for (int i = active.size(); i > 0; i--) {
+                    SubscriptionQueue queue = active.pollFirst();
+                    if (queue.eligible(now)) {
+                        queue.deficit += quantum;
+                        while (queue.eligible(now) && queue.jobs.peekFirst().cost <= queue.deficit) {
+                            Job job = queue.jobs.pollFirst();
+                            queue.deficit -= job.cost;
+                            queue.inFlight++;
+                            if (queue.bucket != null) {
+                                queue.bucket.consume();
+                            }
+                            ready.add(new Dispatch(queue, job));
+                        }
+                    } else if (queue.bucket != null && !queue.jobs.isEmpty()) {
+                        waitNanos = Math.min(waitNanos, Math.max(1, queue.bucket.nanosUntilToken(now)));
+                    }
+                    if (queue.jobs.isEmpty()) {
+                        queue.deficit = 0;
+                        queue.active = false;
+                        retireIfIdle(queue);
+                    } else {
+                        active.addLast(queue);
+                    }
+                }
+                if (ready.isEmpty()) {
+                    retireRefilled();
+                    changed.awaitNanos(waitNanos);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        } finally {
+            lock.unlock();
+        }
+        return ready;
+    }
+
+    private void start(Dispatch dispatch) {
+        CompletableFuture<Void> delivery;
+        try {
+            delivery = dispatch.job.dispatch.get();
+        } catch (RuntimeException e) {
+            delivery = CompletableFuture.failedFuture(e);
+        }
+        delivery.whenComplete((ignored, error) -> {
+            finished(dispatch.queue);
+            if (error == null) {
+                dispatch.job.future.complete(null);
+            } else {
+                dispatch.job.future.completeExceptionally(error);
+            }
+        });
+    }
+
+    private void finished(SubscriptionQueue queue) {
+        lock.lock();
+        try {
+            queue.inFlight--;
+            retireIfIdle(queue);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops an idle queue. A rate-limited one is kept until its bucket has refilled, otherwise
+     * the next job would get a full bucket and a subscription sending one event at a time would
+     * never be limited; until then it is looked at again on every idle pass of the dispatcher.
+     */
+    private void retireIfIdle(SubscriptionQueue queue) {
+        if (queue.active || queue.inFlight > 0 || !queue.jobs.isEmpty()) {
+            return;
+        }
+        if (queue.bucket == null || queue.bucket.isFull(System.nanoTime())) {
+            queues.remove(queue.subscriptionId, queue);
+        } else if (!queue.refilling) {
+            queue.refilling = true;
+            refilling.add(queue);
+        }
+    }
+
+    /**
+     * Retires the idle rate-limited queues whose bucket has refilled since, and forgets the
+     * ones that got work again. Called holding the lock.
+     */
+    private void retireRefilled() {
+        long now = System.nanoTime();
+        for (Iterator<SubscriptionQueue> it = refilling.iterator(); it.hasNext(); ) {
+            SubscriptionQueue queue = it.next();
+            boolean idle = !queue.active && queue.inFlight == 0 && queue.jobs.isEmpty();
+            if (!idle || queue.bucket == null || queue.bucket.isFull(now)) {
+                it.remove();
+                queue.refilling = false;
+                if (idle) {
+                    queues.remove(queue.subscriptionId, queue);
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of subscriptions the scheduler keeps state for.
+     */
+    int queueCount() {
+        lock.lock();
+        try {
+            return queues.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Job {
+        private final int cost;
+        private final Supplier<CompletableFuture<Void>> dispatch;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Job(int cost, Supplier<CompletableFuture<Void>> dispatch) {
+            this.cost = cost;
+            this.dispatch = dispatch;
+        }
+    }
+
+    private record Dispatch(SubscriptionQueue queue, Job job) {
+    }
+
+    private static final class SubscriptionQueue {
+        private final UUID subscriptionId;
+        private final Deque<Job> jobs = new ArrayDeque<>();
+        private TokenBucket bucket;
+        private int maxConcurrency = Integer.MAX_VALUE;
+        private int inFlight;
+        private int deficit;
+        private boolean active;
+        private boolean refilling;
+
+        SubscriptionQueue(UUID subscriptionId) {
+            this.subscriptionId = subscriptionId;
+        }
+
+        void configure(Integer maxRps, Integer maxConcurrency) {
+            if (maxRps == null || maxRps <= 0) {
+                bucket = null;
+            } else if (bucket == null) {
+                bucket = new TokenBucket(maxRps, System.nanoTime());
+            } else {
+                bucket.setRate(maxRps);
+            }
+            this.maxConcurrency = maxConcurrency == null || maxConcurrency <= 0 ? Integer.MAX_VALUE : maxConcurrency;
+        }
+
+        boolean eligible(long nowNanos) {
+            return !jobs.isEmpty() && inFlight < maxConcurrency && (bucket == null || bucket.hasToken(nowNanos));
+        }
+    }
+}
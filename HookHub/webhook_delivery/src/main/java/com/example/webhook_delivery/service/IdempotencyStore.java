@@ -0,0 +1,279 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.config.NodeIdentity;
+import com.example.webhook_delivery.config.RedisConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers producer {@code Idempotency-Key}s so a retried ingest returns the original
+ * delivery instead of queueing a second one.
+ * <p>
+ * Redis ({@code SET NX} with a TTL) is the shared record. In front of it sit two rotating
+ * generations of a local Bloom filter, which bound memory to roughly twice one filter's size.
+ * Every node publishes the keys it claims and adds the ones other nodes publish to its own
+ * filters, and fills them from Redis when it starts, so a key the filters have never seen is
+ * new to the whole cluster. Such keys are accepted immediately and written to Redis in the
+ * background; only possible repeats wait for Redis, as does every key until the filters have
+ * been filled. Until the write lands, or if it fails, the key is held in a local pending map
+ * that same-node repeats are answered from. A repeat that reaches another node before the
+ * claim's notification does, or whose notification is lost, is only caught by the background
+ * write, after it has been queued; strict mode checks Redis for every key instead.
+ */
+@Service
+public class IdempotencyStore implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    private static final String KEY_PREFIX = "hookhub:idempotency:";
+    private static final long WARM_UP_RETRY_MS = 5_000;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final NodeIdentity nodeIdentity;
+    private final Duration ttl;
+    private final long expectedKeys;
+    private final double falsePositiveRate;
+    private final boolean strict;
+    private final ThreadPoolExecutor writer;
+    private final ConcurrentHashMap<String, PendingClaim> pending = new ConcurrentHashMap<>();
+    private final int maxPending;
+    private final Counter duplicates;
+    private final Counter lateDuplicates;
+
+    private BloomFilter current;
+    private BloomFilter previous;
+    private long generationStartedAt;
+    private volatile boolean warm;
+    private Thread warmUp;
+
+    public IdempotencyStore(StringRedisTemplate redisTemplate,
+                            RedisMessageListenerContainer listenerContainer,
+                            NodeIdentity nodeIdentity,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.idempotency.ttl-seconds}") long ttlSeconds,
+                            @Value("${app.idempotency.expected-keys}") long expectedKeys,
+                            @Value("${app.idempotency.false-positive-rate}") double falsePositiveRate,
+                            @Value("${app.idempotency.strict}") boolean strict,
+                            @Value("${app.idempotency.write-queue-capacity}") int writeQueueCapacity) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.nodeIdentity = nodeIdentity;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.expectedKeys = expectedKeys;
+        this.falsePositiveRate = falsePositiveRate;
+        this.strict = strict;
+        this.maxPending = writeQueueCapacity;
+        this.current = new BloomFilter(expectedKeys, falsePositiveRate);
+        this.previous = new BloomFilter(expectedKeys, falsePositiveRate);
+        this.generationStartedAt = System.currentTimeMillis();
+        // When the queue is full the request thread writes to Redis itself
+        this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(writeQueueCapacity), new CustomizableThreadFactory("idempotency-writer-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.duplicates = Counter.builder("hookhub.idempotency.duplicates").tag("detected", "ingest").register(meterRegistry);
+        this.lateDuplicates = Counter.builder("hookhub.idempotency.duplicates").tag("detected", "background").register(meterRegistry);
+        Gauge.builder("hookhub.idempotency.filter.bytes", this, store -> store.current.sizeInBytes() * 2.0)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Listens for other nodes' keys first, so none claimed while the filters are being filled
+     * from Redis is missed.
+     */
+    @PostConstruct
+    public void start() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(RedisConfig.IDEMPOTENCY_KEYS_CHANNEL));
+        warmUp = new CustomizableThreadFactory("idempotency-warm-up-").newThread(() -> {
+            while (!warm) {
+                try {
+                    warmUp();
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to load idempotency keys from Redis, checking every key there until it works: {}", e.getMessage());
+                    try {
+                        Thread.sleep(WARM_UP_RETRY_MS);
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    }
+                }
+            }
+        });
+        warmUp.setDaemon(true);
+        warmUp.start();
+    }
+
+    /**
+     * Adds every key still recorded in Redis to the filters; until then they know nothing of
+     * the keys other nodes claimed before this one started.
+     */
+    void warmUp() {
+        long loaded = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(1000).build();
+        try (Cursor<String> keys = redisTemplate.scan(options)) {
+            while (keys.hasNext()) {
+                String key = keys.next();
+                synchronized (this) {
+                    rotateIfDue();
+                    current.put(key);
+                }
+                loaded++;
+            }
+        }
+        warm = true;
+        logger.info("Loaded {} idempotency keys from Redis", loaded);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('\n');
+        if (separator < 0 || body.substring(0, separator).equals(nodeIdentity.getId())) {
+            return;
+        }
+        String key = body.substring(separator + 1);
+        synchronized (this) {
+            rotateIfDue();
+            current.put(key);
+        }
+    }
+
+    /**
+     * Records the key for the candidate delivery unless it was seen before.
+     *
+     * @return the delivery ID first registered under the key, or {@code null} if the key is new
+     *         and now belongs to {@code candidateId}
+     */
+    public UUID claim(UUID subscriptionId, String idempotencyKey, UUID candidateId) {
+        String key = KEY_PREFIX + subscriptionId + ":" + idempotencyKey;
+        boolean writeInBackground;
+        synchronized (this) {
+            rotateIfDue();
+            PendingClaim claimed = pending.get(key);
+            if (claimed != null) {
+                duplicates.increment();
+                return claimed.deliveryId();
+            }
+            boolean maybeSeen = current.mightContain(key) || previous.mightContain(key);
+            current.put(key);
+            // With too many writes outstanding, Redis is slow or down: check it on this thread
+            writeInBackground = !maybeSeen && !strict && warm && pending.size() < maxPending;
+            if (writeInBackground) {
+                pending.put(key, new PendingClaim(candidateId, System.currentTimeMillis()));
+            }
+        }
+
+        if (writeInBackground) {
+            writer.execute(() -> writeInBackground(key, candidateId));
+            return null;
+        }
+
+        if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, candidateId.toString(), ttl))) {
+            writer.execute(() -> publish(key));
+            return null;
+        }
+        String existing = redisTemplate.opsForValue().get(key);
+        if (existing == null) {
+            // Expired between the two calls; treat as new
+            return null;
+        }
+        duplicates.increment();
+        return UUID.fromString(existing);
+    }
+
+    /**
+     * Forgets a key whose delivery could not be queued, so the producer's retry is accepted.
+     * The Bloom filters keep the key, which only costs that retry a Redis lookup.
+     */
+    public void release(UUID subscriptionId, String idempotencyKey, UUID deliveryId) {
+        String key = KEY_PREFIX + subscriptionId + ":" + idempotencyKey;
+        pending.computeIfPresent(key, (k, claimed) -> claimed.deliveryId().equals(deliveryId) ? null : claimed);
+        // Runs behind any pending background write for the same key
+        writer.execute(() -> {
+            try {
+                if (deliveryId.toString().equals(redisTemplate.opsForValue().get(key))) {
+                    redisTemplate.delete(key);
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to release idempotency key {}: {}", key, e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (warmUp != null) {
+            warmUp.interrupt();
+        }
+        listenerContainer.removeMessageListener(this);
+        writer.shutdown();
+        writer.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void writeInBackground(String key, UUID candidateId) {
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, candidateId.toString(), ttl))) {
+                publish(key);
+            } else {
+                lateDuplicates.increment();
+                logger.warn("Idempotency key {} was already used on another node, delivery {} is a duplicate", key, candidateId);
+            }
+            // Redis answers repeats from here on
+            pending.computeIfPresent(key, (k, claimed) -> claimed.deliveryId().equals(candidateId) ? null : claimed);
+        } catch (Exception e) {
+            // Kept pending, so repeats on this node are still caught until the TTL runs out
+            logger.warn("Failed to record idempotency key {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Tells the other nodes' filters about a key this node claimed.
+     */
+    private void publish(String key) {
+        try {
+            redisTemplate.convertAndSend(RedisConfig.IDEMPOTENCY_KEYS_CHANNEL, nodeIdentity.getId() + "\n" + key);
+        } catch (Exception e) {
+            logger.warn("Failed to publish idempotency key {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a new generation once the current one is full or older than the TTL. A key stays
+     * in the filters for one to two generations; {@code expected-keys} should cover a TTL's worth
+     * of keys across all nodes, or repeats of older keys are only caught by the background write.
+     */
+    private void rotateIfDue() {
+        long now = System.currentTimeMillis();
+        if (current.insertions() >= expectedKeys || now - generationStartedAt >= ttl.toMillis()) {
+            previous = current;
+            current = new BloomFilter(expectedKeys, falsePositiveRate);
+            generationStartedAt = now;
+            pending.values().removeIf(claimed -> now - claimed.claimedAt() >= ttl.toMillis());
+        }
+    }
+
+    private record PendingClaim(UUID deliveryId, long claimedAt) {
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.webhook_delivery.service;
+
+/**
+ * Millisecond latency histogram with log-linear buckets: exact below 4 ms, then four buckets per
+ * power of two up to about 17 minutes, so any recorded value is off by at most a quarter. Two
+ * histograms merge by adding their counts, which is what lets per-minute rollups be summed over
+ * any window.
+ * <p>
+ * Not thread-safe.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 4;
+    private static final int MAX_OCTAVE = 19;
+    public static final int BUCKETS = SUB_BUCKETS + (MAX_OCTAVE - 1) * SUB_BUCKETS;
+
+    private final long[] counts;
+    private long total;
+
+    public LatencyHistogram() {
+        this.counts = new long[BUCKETS];
+    }
+
+    private LatencyHistogram(long[] counts) {
+        this.counts = counts;
+        for (long count : counts) {
+            total += count;
+        }
+    }
+
+    /**
+     * Wraps bucket counts read back from storage; shorter arrays are padded with zeros.
+     */
+    public static LatencyHistogram of(long[] counts) {
+        long[] copy = new long[BUCKETS];
+        System.arraycopy(counts, 0, copy, 0, Math.min(counts.length, BUCKETS));
+        return new LatencyHistogram(copy);
+    }
+
+    public void record(long millis) {
+        counts[indexOf(Math.max(0, millis))]++;
+        total++;
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    public long[] counts() {
+        return counts.clone();
+    }
+
+    /**
+     * The value at quantile {@code q}, interpolated linearly inside its bucket.
+     *
+     * @return {@code null} if nothing was recorded
+     */
+    public Long valueAt(double q) {
+        if (total == 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            if (seen + counts[i] >= rank) {
+                long lower = lowerBound(i);
+                long width = lowerBound(i + 1) - lower;
+                return lower + Math.round((width - 1) * (double) (rank - seen) / counts[i]);
+            }
+            seen += counts[i];
+        }
+        return lowerBound(BUCKETS);
+    }
+
+    static int indexOf(long millis) {
+        if (millis < SUB_BUCKETS) {
+            return (int) millis;
+        }
+        int octave = 63 - Long.numberOfLeadingZeros(millis);
+        if (octave > MAX_OCTAVE) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (millis >> (octave - 2)) - SUB_BUCKETS;
+        return SUB_BUCKETS + (octave - 2) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int octave = (index - SUB_BUCKETS) / SUB_BUCKETS + 2;
+        int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (octave - 2);
+    }
+}
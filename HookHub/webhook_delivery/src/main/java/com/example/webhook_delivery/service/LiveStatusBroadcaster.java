@@ -0,0 +1,342 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.config.NodeIdentity;
+import com.example.webhook_delivery.config.RedisConfig;
+import com.example.webhook_delivery.dto.DeliveryLogSummaryDto;
+import com.example.webhook_delivery.entity.WebhookDeliveryLog;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes delivery attempts to live status clients over Server-Sent Events, so dashboards stop
+ * polling the delivery log.
+ * <p>
+ * Each client has a bounded buffer drained by a small sender pool; a client whose buffer fills
+ * up is reading too slowly and is disconnected rather than allowed to hold anything back.
+ * Attempts made on other nodes arrive over Redis pub/sub, batched by a background relay. Nodes
+ * only subscribe while they have clients, and attempts are only relayed while some other node
+ * is subscribed, so nothing is serialized or sent when nobody is watching.
+ */
+@Service
+public class LiveStatusBroadcaster implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveStatusBroadcaster.class);
+    private static final String HEARTBEAT = "";
+    private static final int RELAY_BATCH_SIZE = 500;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final NodeIdentity nodeIdentity;
+    private final ObjectMapper objectMapper;
+    private final ChannelTopic topic = new ChannelTopic(RedisConfig.DELIVERY_STATUS_CHANNEL);
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<String> relayBuffer;
+    private final ExecutorService senders;
+    private final Counter droppedClients;
+    private final int maxClients;
+    private final int clientBuffer;
+    private final long timeoutMs;
+
+    private boolean listening; // Guarded by this
+    private volatile boolean remoteWatchers;
+    private Thread relay;
+
+    public LiveStatusBroadcaster(StringRedisTemplate redisTemplate,
+                                 RedisMessageListenerContainer listenerContainer,
+                                 NodeIdentity nodeIdentity,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.live-status.max-clients}") int maxClients,
+                                 @Value("${app.live-status.client-buffer}") int clientBuffer,
+                                 @Value("${app.live-status.sender-threads}") int senderThreads,
+                                 @Value("${app.live-status.timeout-ms}") long timeoutMs,
+                                 @Value("${app.live-status.relay-buffer}") int relayBuffer) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.nodeIdentity = nodeIdentity;
+        this.objectMapper = objectMapper;
+        this.maxClients = maxClients;
+        this.clientBuffer = clientBuffer;
+        this.timeoutMs = timeoutMs;
+        this.relayBuffer = new ArrayBlockingQueue<>(relayBuffer);
+        this.senders = Executors.newFixedThreadPool(senderThreads, new CustomizableThreadFactory("live-status-"));
+        this.droppedClients = Counter.builder("hookhub.live_status.dropped_clients")
+                .description("Live status clients disconnected for reading too slowly")
+                .register(meterRegistry);
+        Gauge.builder("hookhub.live_status.clients", clients, Set::size).register(meterRegistry);
+    }
+
+    private final class Client {
+        final UUID subscriptionId;
+        final UUID taskId;
+        final SseEmitter emitter = new SseEmitter(timeoutMs);
+        final BlockingQueue<String> pending = new ArrayBlockingQueue<>(clientBuffer);
+        final AtomicBoolean draining = new AtomicBoolean();
+
+        Client(UUID subscriptionId, UUID taskId) {
+            this.subscriptionId = subscriptionId;
+            this.taskId = taskId;
+        }
+
+        boolean matches(String subscriptionId, String taskId) {
+            return (this.subscriptionId == null || this.subscriptionId.toString().equals(subscriptionId))
+                    && (this.taskId == null || this.taskId.toString().equals(taskId));
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        relay = new CustomizableThreadFactory("live-status-relay-").newThread(this::relayLoop);
+        relay.setDaemon(true);
+        relay.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        relay.interrupt();
+        senders.shutdownNow();
+        for (Client client : clients) {
+            client.emitter.complete();
+        }
+    }
+
+    /**
+     * Opens a stream of attempts, optionally only those of one subscription or task.
+     *
+     * @return {@code null} if the node already serves the maximum number of clients
+     */
+    public SseEmitter register(UUID subscriptionId, UUID taskId) {
+        if (clients.size() >= maxClients) {
+            return null;
+        }
+        Client client = new Client(subscriptionId, taskId);
+        client.emitter.onCompletion(() -> remove(client));
+        client.emitter.onTimeout(() -> remove(client));
+        client.emitter.onError(error -> remove(client));
+        clients.add(client);
+        updateListening();
+        return client.emitter;
+    }
+
+    /**
+     * Hands a recorded attempt to local clients and, if another node has any, to Redis. Never
+     * blocks the caller.
+     */
+    public void publish(WebhookDeliveryLog log) {
+        boolean local = !clients.isEmpty();
+        if (!local && !remoteWatchers) {
+            return;
+        }
+        String line;
+        try {
+            line = log.getSubscriptionId() + "\t" + log.getDeliveryTaskId() + "\t" + objectMapper.writeValueAsString(toDto(log));
+        } catch (JsonProcessingException e) {
+            logger.warn("Failed to serialize live status of task {}: {}", log.getDeliveryTaskId(), e.getMessage());
+            return;
+        }
+        if (local) {
+            dispatch(line);
+        }
+        if (remoteWatchers) {
+            // Best effort like the rest of the live view: dropped rather than waited for
+            relayBuffer.offer(line);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int header = body.indexOf('\n');
+        if (header < 0 || body.substring(0, header).equals(nodeIdentity.getId())) {
+            return;
+        }
+        int start = header + 1;
+        while (start < body.length()) {
+            int end = body.indexOf('\n', start);
+            if (end < 0) {
+                end = body.length();
+            }
+            dispatch(body.substring(start, end));
+            start = end + 1;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.live-status.heartbeat-ms}")
+    public void heartbeat() {
+        for (Client client : clients) {
+            offer(client, HEARTBEAT);
+        }
+    }
+
+    /**
+     * Probes whether any other node is subscribed, so attempts are only relayed while one is.
+     * The probe carries no events; receivers only see this node's id.
+     */
+    @Scheduled(fixedDelayString = "${app.live-status.watcher-check-ms}")
+    public void checkRemoteWatchers() {
+        try {
+            updateRemoteWatchers(redisTemplate.convertAndSend(RedisConfig.DELIVERY_STATUS_CHANNEL, nodeIdentity.getId() + "\n"));
+        } catch (Exception e) {
+            logger.debug("Failed to probe live status subscribers: {}", e.getMessage());
+        }
+    }
+
+    private void updateRemoteWatchers(Long receivers) {
+        boolean self;
+        synchronized (this) {
+            self = listening;
+        }
+        remoteWatchers = receivers != null && receivers > (self ? 1 : 0);
+    }
+
+    private void dispatch(String line) {
+        int first = line.indexOf('\t');
+        int second = line.indexOf('\t', first + 1);
+        if (first < 0 || second < 0) {
+            return;
+        }
+        String subscriptionId = line.substring(0, first);
+        String taskId = line.substring(first + 1, second);
+        String json = null;
+        for (Client client : clients) {
+            if (client.matches(subscriptionId, taskId)) {
+                if (json == null) {
+                    json = line.substring(second + 1);
+                }
+                offer(client, json);
+            }
+        }
+    }
+
+    private void offer(Client client, String event) {
+        if (!client.pending.offer(event)) {
+            if (remove(client)) {
+                droppedClients.increment();
+                logger.info("Disconnecting live status client too slow to keep up ({} events behind)", clientBuffer);
+                // Completing waits for a send stuck on the client's socket, so never on the caller
+                try {
+                    senders.execute(client.emitter::complete);
+                } catch (RuntimeException e) {
+                    logger.debug("Could not close live status client: {}", e.getMessage());
+                }
+            }
+            return;
+        }
+        scheduleDrain(client);
+    }
+
+    private void drain(Client client) {
+        try {
+            String event;
+            while ((event = client.pending.poll()) != null) {
+                if (event.isEmpty()) {
+                    client.emitter.send(SseEmitter.event().comment("keepalive"));
+                } else {
+                    client.emitter.send(SseEmitter.event().name("delivery").data(event, MediaType.APPLICATION_JSON));
+                }
+            }
+        } catch (Exception e) {
+            // The client went away; the emitter's error callback removes it as well
+            remove(client);
+        } finally {
+            client.draining.set(false);
+            if (!client.pending.isEmpty() && clients.contains(client)) {
+                scheduleDrain(client);
+            }
+        }
+    }
+
+    private void scheduleDrain(Client client) {
+        if (client.draining.compareAndSet(false, true)) {
+            try {
+                senders.execute(() -> drain(client));
+            } catch (RuntimeException e) {
+                client.draining.set(false);
+            }
+        }
+    }
+
+    private boolean remove(Client client) {
+        if (!clients.remove(client)) {
+            return false;
+        }
+        client.pending.clear();
+        updateListening();
+        return true;
+    }
+
+    /**
+     * Subscribes to other nodes' attempts while this node has clients, and only then.
+     */
+    private synchronized void updateListening() {
+        boolean wanted = !clients.isEmpty();
+        if (wanted == listening) {
+            return;
+        }
+        if (wanted) {
+            listenerContainer.addMessageListener(this, topic);
+        } else {
+            listenerContainer.removeMessageListener(this, topic);
+        }
+        listening = wanted;
+    }
+
+    private void relayLoop() {
+        List<String> batch = new ArrayList<>(RELAY_BATCH_SIZE);
+        StringBuilder message = new StringBuilder();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(relayBuffer.take());
+                relayBuffer.drainTo(batch, RELAY_BATCH_SIZE - 1);
+                message.setLength(0);
+                message.append(nodeIdentity.getId());
+                for (String line : batch) {
+                    message.append('\n').append(line);
+                }
+                updateRemoteWatchers(redisTemplate.convertAndSend(RedisConfig.DELIVERY_STATUS_CHANNEL, message.toString()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.warn("Failed to relay {} live status events: {}", batch.size(), e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private static DeliveryLogSummaryDto toDto(WebhookDeliveryLog log) {
+        return new DeliveryLogSummaryDto(log.getId(), log.getDeliveryTaskId(), log.getSubscriptionId(), log.getTargetUrl(),
+                log.getTimestamp(), log.getAttemptNumber(), log.getOutcome(), log.getHttpStatusCode(), log.getErrorDetails(),
+                log.getQueueWaitMs(), log.getHttpMs(), log.getEndToEndMs());
+    }
+}
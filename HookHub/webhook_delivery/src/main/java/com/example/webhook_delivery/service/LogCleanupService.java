@@ -1,7 +1,5 @@
 package com.example.webhook_delivery.service;
 
-import com.example.webhook_delivery.repository.WebhookDeliveryLogRepository;
-import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,16 +14,36 @@ public class LogCleanupService {
     private static final Logger logger = LoggerFactory.getLogger(LogCleanupService.class);
 
     @Autowired
-    private WebhookDeliveryLogRepository logRepository;
+    private DeliveryLogPartitionManager partitionManager;
+
+    @Autowired
+    private PayloadStore payloadStore;
+
+    @Autowired
+    private DeliveryStatsAggregator statsAggregator;
+
+    @Value("${app.stats.retention-days}")
+    private int statsRetentionDays;
+
+    @Value("${app.payload.blob-retention-hours}")
+    private int blobRetentionHours;
 
     @Value("${app.log-retention-hours}")
     private int logRetentionHours;
 
-    @Scheduled(cron = "0 0 0 * * ?") // Runs every day at midnight
-    @Transactional
+    @Scheduled(cron = "${app.delivery-log.retention-cron}") // Hourly by default
     public void cleanupOldLogs() {
+        partitionManager.ensureFuturePartitions();
         LocalDateTime cutoff = LocalDateTime.now().minusHours(logRetentionHours);
-        logger.info("Deleting logs older than {}", cutoff);
-        logRepository.deleteByTimestampBefore(cutoff);
+        int dropped = partitionManager.dropPartitionsBefore(cutoff);
+        logger.info("Dropped {} log partitions older than {}", dropped, cutoff);
+
+        LocalDateTime blobCutoff = LocalDateTime.now().minusHours(blobRetentionHours);
+        int deletedBlobs = payloadStore.deleteUnusedBefore(blobCutoff);
+        logger.info("Deleted {} payload blobs unused since {}", deletedBlobs, blobCutoff);
+
+        LocalDateTime statsCutoff = LocalDateTime.now().minusDays(statsRetentionDays);
+        int deletedRollups = statsAggregator.deleteBefore(statsCutoff);
+        logger.info("Deleted {} stats rollups older than {}", deletedRollups, statsCutoff);
     }
 }
@@ -0,0 +1,452 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.rabbitmq.WebhookMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Delivers the events of ordered subscriptions one at a time, in the order they were consumed.
+ * <p>
+ * Each subscription has its own lane, so ordered subscriptions never wait on each other and
+ * unordered ones bypass this entirely. While an event is being attempted, the ones behind it
+ * are held in memory, unacknowledged, up to {@code max-buffered}; beyond that, or once the
+ * event at the head has been scheduled for a retry, they are spilled to a Redis list and
+ * acknowledged. The retrying head is recorded in Redis, so its retry is recognised and let
+ * through on whichever node consumes the shard next, and the list is worked off once the head
+ * is delivered or given up on, or once its record expires.
+ * <p>
+ * A lane's Redis reads and writes run in order but outside its lock, and the state a lane is
+ * opened with is read before it is added to the map, so the consumer and the attempts
+ * finishing never wait on Redis for each other.
+ */
+@Service
+public class OrderedDeliverySequencer {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderedDeliverySequencer.class);
+
+    private static final String KEY_PREFIX = "hookhub:ordered:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final int maxBuffered;
+    private final Duration headTtl;
+    private final Map<UUID, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicLong retirements = new AtomicLong();
+
+    public OrderedDeliverySequencer(StringRedisTemplate redisTemplate,
+                                    ObjectMapper objectMapper,
+                                    @Value("${app.ordered.max-buffered}") int maxBuffered,
+                                    @Value("${app.ordered.head-ttl-seconds}") long headTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.maxBuffered = maxBuffered;
+        this.headTtl = Duration.ofSeconds(headTtlSeconds);
+    }
+
+    /**
+     * Runs the event now if its lane is free, or holds it behind the events before it.
+     *
+     * @param attempt makes one delivery attempt; its future completes with {@code true} when
+     *                the event was scheduled for another attempt rather than finished
+     * @return completed once the message can be acknowledged: after its attempt, or once it
+     *         has been spilled to Redis
+     */
+    public CompletableFuture<Void> submit(WebhookMessage message,
+                                          Function<WebhookMessage, CompletableFuture<Boolean>> attempt) {
+        while (true) {
+            Lane lane;
+            try {
+                lane = lane(message.getSubscriptionId());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            if (lane == null) {
+                continue;
+            }
+            CompletableFuture<Void> spilled = null;
+            synchronized (lane) {
+                if (lane.retired) {
+                    continue;
+                }
+                lane.attempt = attempt;
+                expireRetrying(lane);
+                // Free lane, or the retrying head's own retry
+                if (message.getDeliveryTaskId().equals(lane.retrying)
+                        || (!lane.busy && lane.retrying == null && lane.spilled == 0)) {
+                    lane.busy = true;
+                } else if (lane.retrying == null && lane.spilled == 0 && lane.buffered.size() < maxBuffered) {
+                    Held held = new Held(message, new CompletableFuture<>());
+                    lane.buffered.add(held);
+                    return held.settled;
+                } else {
+                    spilled = spill(lane, List.of(message), false);
+                    if (!lane.busy && lane.retrying == null) {
+                        // A list left over from a restart or handover, with nothing working it off
+                        lane.busy = true;
+                        workOffQueue(lane);
+                    }
+                }
+            }
+            drainIo(lane);
+            return spilled != null ? spilled : run(lane, message, false);
+        }
+    }
+
+    /**
+     * Lets the lane move on from a retrying head that will not come back, because it was given
+     * up on outside of its attempts, instead of holding the events behind it until the head
+     * expires.
+     */
+    public void abandon(UUID subscriptionId, UUID taskId) {
+        Lane lane = lanes.get(subscriptionId);
+        if (lane == null) {
+            String key = headKey(subscriptionId);
+            if (taskId.toString().equals(redisTemplate.opsForValue().get(key))) {
+                redisTemplate.delete(key);
+            }
+            return;
+        }
+        synchronized (lane) {
+            if (lane.retired || lane.busy || !taskId.equals(lane.retrying)) {
+                return;
+            }
+        }
+        logger.warn("Task {} given up on, releasing the ordered lane of subscription {}", taskId, subscriptionId);
+        advance(lane, taskId, false, false);
+    }
+
+    private CompletableFuture<Void> run(Lane lane, WebhookMessage message, boolean fromQueue) {
+        CompletableFuture<Boolean> attempted;
+        try {
+            attempted = lane.attempt.apply(message);
+        } catch (RuntimeException e) {
+            attempted = CompletableFuture.failedFuture(e);
+        }
+        return attempted.whenComplete((retrying, error) -> {
+            if (error == null) {
+                advance(lane, message.getDeliveryTaskId(), fromQueue, Boolean.TRUE.equals(retrying));
+            } else if (fromQueue) {
+                // Still first in the list; tried again when the subscription's next event arrives
+                logger.error("Held task {} failed unexpectedly: {}", message.getDeliveryTaskId(), error.getMessage());
+                stall(lane, error);
+            } else {
+                // Rejected back through the broker, so it comes round again as the head
+                advance(lane, message.getDeliveryTaskId(), false, true);
+            }
+        }).thenApply(ignored -> null);
+    }
+
+    private void advance(Lane lane, UUID taskId, boolean fromQueue, boolean retrying) {
+        Held next = null;
+        synchronized (lane) {
+            if (fromQueue) {
+                io(lane, () -> redisTemplate.opsForList().leftPop(queueKey(lane.subscriptionId)));
+                lane.spilled--;
+            }
+            if (retrying) {
+                lane.retrying = taskId;
+                lane.retryingUntil = System.currentTimeMillis() + headTtl.toMillis();
+                lane.busy = false;
+                io(lane, () -> {
+                    redisTemplate.opsForValue().set(headKey(lane.subscriptionId), taskId.toString(), headTtl);
+                    return null;
+                });
+                List<Held> held = new ArrayList<>(lane.buffered);
+                lane.buffered.clear();
+                List<WebhookMessage> messages = new ArrayList<>(held.size());
+                for (Held h : held) {
+                    messages.add(h.message);
+                }
+                // Held ones came before anything already spilled, so they go in front of it
+                spill(lane, messages, true).whenComplete((ignored, error) -> {
+                    for (Held h : held) {
+                        if (error != null) {
+                            h.settled.completeExceptionally(error);
+                        } else {
+                            h.settled.complete(null);
+                        }
+                    }
+                });
+            } else {
+                if (taskId.equals(lane.retrying)) {
+                    lane.retrying = null;
+                    io(lane, () -> redisTemplate.delete(headKey(lane.subscriptionId)));
+                }
+                next = lane.buffered.poll();
+                if (next != null) {
+                    lane.busy = true;
+                } else if (lane.spilled > 0) {
+                    lane.busy = true;
+                    workOffQueue(lane);
+                } else {
+                    idle(lane);
+                }
+            }
+        }
+        drainIo(lane);
+        if (next != null) {
+            Held held = next;
+            run(lane, held.message, false).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    held.settled.completeExceptionally(error);
+                } else {
+                    held.settled.complete(null);
+                }
+            });
+        }
+    }
+
+    /**
+     * Forgets a retrying head once its record in Redis has expired too, so a retry that was
+     * lost for good does not hold the lane forever.
+     */
+    private void expireRetrying(Lane lane) {
+        if (lane.retrying != null && System.currentTimeMillis() >= lane.retryingUntil) {
+            logger.warn("Retry of task {} did not arrive within {}, moving subscription {} on",
+                    lane.retrying, headTtl, lane.subscriptionId);
+            lane.retrying = null;
+        }
+    }
+
+    /**
+     * Runs the first spilled message once the lane's earlier Redis writes are done. Called
+     * holding the lane, with the lane marked busy.
+     */
+    private void workOffQueue(Lane lane) {
+        io(lane, () -> peekQueue(lane), (queued, error) -> {
+            if (queued != null) {
+                run(lane, queued, true);
+            } else if (error == null) {
+                synchronized (lane) {
+                    idle(lane);
+                }
+                drainIo(lane);
+            }
+        });
+    }
+
+    /**
+     * Marks the lane idle and retires it once its pending Redis writes are done, so a lane
+     * reopened from Redis never reads state this one has not written yet. Called holding the lane.
+     */
+    private void idle(Lane lane) {
+        lane.busy = false;
+        io(lane, () -> {
+            synchronized (lane) {
+                if (!lane.retired && !lane.busy && lane.buffered.isEmpty() && lane.spilled <= 0 && lane.retrying == null) {
+                    retire(lane);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Drops the lane's local state; the next event reopens it from Redis. Messages held in
+     * memory are failed so the broker dead-letters them and they come back later.
+     */
+    private void stall(Lane lane, Throwable cause) {
+        synchronized (lane) {
+            retire(lane);
+            for (Held h : lane.buffered) {
+                h.settled.completeExceptionally(cause);
+            }
+            lane.buffered.clear();
+        }
+    }
+
+    /**
+     * Called holding the lane. Counted before the lane leaves the map, so {@link #lane} can
+     * tell whether state it read from Redis may predate this lane's writes.
+     */
+    private void retire(Lane lane) {
+        lane.retired = true;
+        retirements.incrementAndGet();
+        lanes.remove(lane.subscriptionId, lane);
+    }
+
+    /**
+     * The subscription's lane, opened from Redis if it has none. Redis is read before the map
+     * is touched, so no map bin is locked while waiting on it.
+     *
+     * @return {@code null} if a lane retired while this one was being read, so it has to be read again
+     */
+    private Lane lane(UUID subscriptionId) {
+        Lane lane = lanes.get(subscriptionId);
+        if (lane != null) {
+            return lane;
+        }
+        long seen = retirements.get();
+        Lane opened = openLane(subscriptionId);
+        return lanes.compute(subscriptionId,
+                (id, existing) -> existing != null ? existing : retirements.get() == seen ? opened : null);
+    }
+
+    private Lane openLane(UUID subscriptionId) {
+        Lane lane = new Lane(subscriptionId);
+        String head = redisTemplate.opsForValue().get(headKey(subscriptionId));
+        if (head != null) {
+            Long ttlMs = redisTemplate.getExpire(headKey(subscriptionId), TimeUnit.MILLISECONDS);
+            lane.retrying = UUID.fromString(head);
+            lane.retryingUntil = System.currentTimeMillis() + (ttlMs != null && ttlMs > 0 ? ttlMs : headTtl.toMillis());
+        }
+        Long size = redisTemplate.opsForList().size(queueKey(subscriptionId));
+        lane.spilled = size != null ? size.intValue() : 0;
+        return lane;
+    }
+
+    /**
+     * Queues the messages to be added to the lane's Redis list, at its end or, in their order,
+     * in front of what it holds. Called holding the lane.
+     *
+     * @return completed once they are in Redis
+     */
+    private CompletableFuture<Void> spill(Lane lane, List<WebhookMessage> messages, boolean first) {
+        if (messages.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        lane.spilled += messages.size();
+        return io(lane, () -> {
+            List<String> values = new ArrayList<>(messages.size());
+            for (WebhookMessage message : messages) {
+                try {
+                    values.add(objectMapper.writeValueAsString(message));
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("Cannot serialize task " + message.getDeliveryTaskId(), e);
+                }
+            }
+            if (first) {
+                // LPUSH adds them one by one, each in front of the last
+                Collections.reverse(values);
+                redisTemplate.opsForList().leftPushAll(queueKey(lane.subscriptionId), values);
+            } else {
+                redisTemplate.opsForList().rightPushAll(queueKey(lane.subscriptionId), values);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * The next spilled message, left in the list until its attempt is over.
+     */
+    private WebhookMessage peekQueue(Lane lane) {
+        while (true) {
+            String value = redisTemplate.opsForList().index(queueKey(lane.subscriptionId), 0);
+            if (value == null) {
+                synchronized (lane) {
+                    lane.spilled = 0;
+                }
+                return null;
+            }
+            try {
+                return objectMapper.readValue(value, WebhookMessage.class);
+            } catch (JsonProcessingException e) {
+                logger.error("Dropping unreadable held message of subscription {}: {}", lane.subscriptionId, e.getMessage());
+                redisTemplate.opsForList().leftPop(queueKey(lane.subscriptionId));
+                synchronized (lane) {
+                    lane.spilled--;
+                }
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> io(Lane lane, Supplier<T> operation) {
+        return io(lane, operation, null);
+    }
+
+    /**
+     * Queues a Redis operation of the lane. Operations are queued holding the lane, so they run
+     * in the order its state changed, but run by {@link #drainIo} once it has been let go, so no
+     * thread waits on Redis to look at the lane. A failed operation stalls the lane.
+     *
+     * @param then called with the result before the returned future completes, or {@code null}
+     */
+    private <T> CompletableFuture<T> io(Lane lane, Supplier<T> operation, BiConsumer<? super T, ? super Throwable> then) {
+        CompletableFuture<T> done = new CompletableFuture<>();
+        if (then != null) {
+            done.whenComplete(then);
+        }
+        lane.io.add(() -> {
+            T result;
+            try {
+                result = operation.get();
+            } catch (RuntimeException e) {
+                logger.error("Ordered lane of subscription {} stalled: {}", lane.subscriptionId, e.getMessage());
+                stall(lane, e);
+                done.completeExceptionally(e);
+                return;
+            }
+            done.complete(result);
+        });
+        return done;
+    }
+
+    /**
+     * Runs the lane's queued Redis operations unless another thread already is. Never called
+     * holding the lane.
+     */
+    private void drainIo(Lane lane) {
+        while (!lane.io.isEmpty() && lane.ioRunning.compareAndSet(false, true)) {
+            try {
+                Runnable operation;
+                while ((operation = lane.io.poll()) != null) {
+                    operation.run();
+                }
+            } finally {
+                lane.ioRunning.set(false);
+            }
+        }
+    }
+
+    private static String headKey(UUID subscriptionId) {
+        return KEY_PREFIX + subscriptionId + ":head";
+    }
+
+    private static String queueKey(UUID subscriptionId) {
+        return KEY_PREFIX + subscriptionId + ":queue";
+    }
+
+    private record Held(WebhookMessage message, CompletableFuture<Void> settled) {
+    }
+
+    private static final class Lane {
+        private final UUID subscriptionId;
+        private final Deque<Held> buffered = new ArrayDeque<>();
+        private Function<WebhookMessage, CompletableFuture<Boolean>> attempt;
+        private UUID retrying; // Head waiting for its retry; nothing else runs until it is done
+        private long retryingUntil; // Epoch millis the head's record in Redis expires
+        private int spilled; // Length of the Redis list
+        private boolean busy;
+        private boolean retired;
+        private final Queue<Runnable> io = new ConcurrentLinkedQueue<>(); // Redis operations not yet run
+        private final AtomicBoolean ioRunning = new AtomicBoolean();
+
+        private Lane(UUID subscriptionId) {
+            this.subscriptionId = subscriptionId;
+        }
+    }
+}
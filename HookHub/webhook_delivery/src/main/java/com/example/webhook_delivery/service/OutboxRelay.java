@@ -0,0 +1,91 @@
+package com.example.webhook_delivery.service;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Streams {@link DeliveryOutbox} rows to the broker.
+ * <p>
+ * Claimed rows are published back to back with correlated confirms, at most
+ * {@code max-in-flight} unconfirmed at a time, and the confirmed ones are deleted with one
+ * statement per batch. Rows the broker did not confirm keep their lease and are published
+ * again once it runs out, so delivery is at least once.
+ */
+@Service
+@ConditionalOnProperty(name = "app.outbox.enabled")
+@RequiredArgsConstructor
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final DeliveryOutbox outbox;
+    private final DeliveryPublisher deliveryPublisher;
+
+    @Value("${app.outbox.relay-batch-size}")
+    private int batchSize;
+
+    @Value("${app.outbox.max-in-flight}")
+    private int maxInFlight;
+
+    @Value("${app.outbox.claim-lease-ms}")
+    private long claimLeaseMs;
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms}")
+    public void relay() {
+        int relayed = 0;
+        List<DeliveryOutbox.Claimed> claimed;
+        do {
+            claimed = outbox.claim(batchSize, claimLeaseMs);
+            if (claimed.isEmpty()) {
+                break;
+            }
+            List<Long> confirmedIds = publish(claimed);
+            outbox.delete(confirmedIds);
+            relayed += confirmedIds.size();
+            if (confirmedIds.size() < claimed.size()) {
+                logger.warn("{} of {} outbox rows were not confirmed, retrying after the lease",
+                        claimed.size() - confirmedIds.size(), claimed.size());
+                break;
+            }
+        } while (claimed.size() == batchSize);
+
+        if (relayed > 0) {
+            logger.debug("Relayed {} outbox rows", relayed);
+        }
+    }
+
+    private List<Long> publish(List<DeliveryOutbox.Claimed> claimed) {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        List<CompletableFuture<Boolean>> confirms = new ArrayList<>(claimed.size());
+        try {
+            for (DeliveryOutbox.Claimed row : claimed) {
+                inFlight.acquire();
+                CompletableFuture<Boolean> confirm = deliveryPublisher.publishAsync(row.message());
+                confirm.whenComplete((ack, error) -> inFlight.release());
+                confirms.add(confirm);
+            }
+        } catch (InterruptedException e) {
+            // Shutting down; what was sent is still settled below, the rest stays leased
+            Thread.currentThread().interrupt();
+        }
+
+        List<Long> confirmedIds = new ArrayList<>(confirms.size());
+        for (int i = 0; i < confirms.size(); i++) {
+            // Every future completes within the confirm timeout
+            if (confirms.get(i).join()) {
+                confirmedIds.add(claimed.get(i).id());
+            }
+        }
+        return confirmedIds;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.rabbitmq.PayloadCompression;
+import com.example.webhook_delivery.rabbitmq.WebhookMessage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content-addressed store for payloads too large to travel through the broker.
+ * <p>
+ * Payloads above {@code offload-threshold-bytes} are written gzip-compressed to the
+ * {@code payload_blob} table under their SHA-256, and messages carry only that reference.
+ * Identical payloads, such as one event fanned out to many subscriptions, are stored once.
+ * Resolved payloads are kept in a size-bounded local cache for the deliveries that follow.
+ */
+@Service
+public class PayloadStore {
+
+    private static final String UPSERT_SQL = "INSERT INTO payload_blob (hash, content, size, last_used_at) VALUES (?, ?, ?, ?) "
+            + "ON CONFLICT (hash) DO UPDATE SET last_used_at = EXCLUDED.last_used_at";
+    private static final String SELECT_SQL = "SELECT content FROM payload_blob WHERE hash = ?";
+    private static final String DELETE_UNUSED_SQL = "DELETE FROM payload_blob WHERE last_used_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int offloadThresholdBytes;
+    private final Cache<String, byte[]> cache;
+
+    public PayloadStore(JdbcTemplate jdbcTemplate,
+                        @Value("${app.payload.offload-threshold-bytes}") int offloadThresholdBytes,
+                        @Value("${app.payload.cache-max-bytes}") long cacheMaxBytes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.offloadThresholdBytes = offloadThresholdBytes;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxBytes)
+                .<String, byte[]>weigher((hash, payload) -> payload.length)
+                .build();
+    }
+
+    /**
+     * Moves large payloads out of the messages. Messages sharing one payload array are
+     * hashed and stored once.
+     */
+    public void offload(List<WebhookMessage> messages) {
+        Map<byte[], String> stored = new IdentityHashMap<>();
+        for (WebhookMessage message : messages) {
+            byte[] payload = message.getPayload();
+            if (payload != null && payload.length > offloadThresholdBytes) {
+                message.setPayloadRef(stored.computeIfAbsent(payload, this::store));
+                message.setPayload(null);
+            }
+        }
+    }
+
+    /**
+     * Returns the message's payload, loading it from the store if it was offloaded.
+     *
+     * @throws IllegalStateException if the referenced blob no longer exists
+     */
+    public byte[] resolve(WebhookMessage message) {
+        if (message.getPayloadRef() == null) {
+            return message.getPayload();
+        }
+        return cache.get(message.getPayloadRef(), this::load);
+    }
+
+    /**
+     * Rough payload size without loading an offloaded payload.
+     */
+    public int sizeHint(WebhookMessage message) {
+        return message.getPayload() != null ? message.getPayload().length : offloadThresholdBytes;
+    }
+
+    /**
+     * Deletes blobs no message has been published with since the cutoff.
+     *
+     * @return the number of blobs deleted
+     */
+    public int deleteUnusedBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.update(DELETE_UNUSED_SQL, Timestamp.valueOf(cutoff));
+    }
+
+    private String store(byte[] payload) {
+        String hash = sha256(payload);
+        jdbcTemplate.update(UPSERT_SQL, hash, PayloadCompression.gzip(payload), payload.length,
+                Timestamp.valueOf(LocalDateTime.now()));
+        cache.put(hash, payload);
+        return hash;
+    }
+
+    private byte[] load(String hash) {
+        try {
+            byte[] content = jdbcTemplate.queryForObject(SELECT_SQL, byte[].class, hash);
+            return PayloadCompression.gunzip(content);
+        } catch (EmptyResultDataAccessException e) {
+            throw new IllegalStateException("Payload blob " + hash + " not found");
+        }
+    }
+
+    private static String sha256(byte[] payload) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(payload));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
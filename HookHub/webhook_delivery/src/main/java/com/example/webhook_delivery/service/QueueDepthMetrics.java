@@ -0,0 +1,87 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.config.RabbitMQConfig;
+import com.example.webhook_delivery.rabbitmq.DeliveryShards;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Backlog gauges: messages waiting in each delivery shard and the 10s retry queue, and
+ * retries held in Redis, in total and past their due time. Sampled on a schedule so scrapes
+ * never wait on the broker or Redis.
+ */
+@Component
+public class QueueDepthMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueueDepthMetrics.class);
+
+    private final AmqpAdmin amqpAdmin;
+    private final StringRedisTemplate redisTemplate;
+    private final String[] shardQueues;
+    private final AtomicLong[] shardDepths;
+    private final AtomicLong retryQueueDepth = new AtomicLong();
+    private final AtomicLong scheduledRetries = new AtomicLong();
+    private final AtomicLong overdueRetries = new AtomicLong();
+
+    public QueueDepthMetrics(AmqpAdmin amqpAdmin,
+                             StringRedisTemplate redisTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.rabbitmq.queue}") String baseQueue,
+                             @Value("${app.rabbitmq.shards}") int shards) {
+        this.amqpAdmin = amqpAdmin;
+        this.redisTemplate = redisTemplate;
+        this.shardQueues = new String[shards];
+        this.shardDepths = new AtomicLong[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            shardQueues[shard] = DeliveryShards.queueName(baseQueue, shard);
+            shardDepths[shard] = new AtomicLong();
+            Gauge.builder("hookhub.queue.depth", shardDepths[shard], AtomicLong::get)
+                    .tag("queue", "delivery")
+                    .tag("shard", Integer.toString(shard))
+                    .register(meterRegistry);
+        }
+        Gauge.builder("hookhub.queue.depth", retryQueueDepth, AtomicLong::get)
+                .tag("queue", "retry-10s")
+                .tag("shard", "all")
+                .register(meterRegistry);
+        Gauge.builder("hookhub.retry.scheduled", scheduledRetries, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("hookhub.retry.overdue", overdueRetries, AtomicLong::get)
+                .description("Retries past their due time that have not been re-published yet")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.metrics.queue-depth-interval-ms}")
+    public void sample() {
+        try {
+            for (int shard = 0; shard < shardQueues.length; shard++) {
+                shardDepths[shard].set(messageCount(shardQueues[shard]));
+            }
+            retryQueueDepth.set(messageCount(RabbitMQConfig.QUEUE_RETRY_10S));
+        } catch (Exception e) {
+            logger.debug("Failed to sample queue depths: {}", e.getMessage());
+        }
+        try {
+            Long total = redisTemplate.opsForZSet().zCard(RetryScheduler.RETRY_KEY);
+            Long overdue = redisTemplate.opsForZSet().count(RetryScheduler.RETRY_KEY, Double.NEGATIVE_INFINITY, System.currentTimeMillis());
+            scheduledRetries.set(total != null ? total : 0);
+            overdueRetries.set(overdue != null ? overdue : 0);
+        } catch (Exception e) {
+            logger.debug("Failed to sample scheduled retries: {}", e.getMessage());
+        }
+    }
+
+    private long messageCount(String queue) {
+        QueueInformation info = amqpAdmin.getQueueInfo(queue);
+        return info != null ? info.getMessageCount() : 0;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.entity.Subscription;
+import com.example.webhook_delivery.rabbitmq.WebhookMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Holds failed deliveries until their next attempt is due and then puts them back on the
+ * delivery queue.
+ * <p>
+ * Pending retries live in a Redis sorted set scored by due time, so any number of attempts
+ * and any delay can be scheduled and all nodes share the same backlog. Due entries are
+ * claimed with a lease rather than removed; they are only deleted once the broker has
+ * confirmed the re-publish, so a node dying mid-way delays a retry instead of losing it.
+ */
+@Service
+@RequiredArgsConstructor
+public class RetryScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryScheduler.class);
+
+    static final String RETRY_KEY = "hookhub:retries";
+
+    // Pushes the lease out on every due member and returns them, atomically across nodes
+    private static final RedisScript<List<String>> CLAIM_DUE = claimDueScript();
+
+    private final StringRedisTemplate redisTemplate;
+    private final DeliveryPublisher deliveryPublisher;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.webhook.max-retries}")
+    private int defaultMaxRetries;
+
+    @Value("${app.retry.base-delay-ms}")
+    private long defaultBaseDelayMs;
+
+    @Value("${app.retry.max-delay-ms}")
+    private long defaultMaxDelayMs;
+
+    @Value("${app.retry.max-retry-after-seconds}")
+    private long maxRetryAfterSeconds;
+
+    @Value("${app.retry.batch-size}")
+    private int batchSize;
+
+    @Value("${app.retry.claim-lease-ms}")
+    private long claimLeaseMs;
+
+    /**
+     * Total number of attempts allowed for the subscription, including the first one.
+     */
+    public int maxAttempts(Subscription subscription) {
+        return subscription.getMaxRetries() != null ? subscription.getMaxRetries() : defaultMaxRetries;
+    }
+
+    /**
+     * Delay before the given attempt: exponential in the attempt number, capped, with equal
+     * jitter so retries of a burst spread out instead of landing together. A {@code Retry-After}
+     * from the endpoint is honoured as a lower bound.
+     *
+     * @param attempt      the attempt about to be scheduled, 2 for the first retry
+     * @param retryAfterMs delay requested by the endpoint, or {@code null}
+     */
+    public long backoffMs(Subscription subscription, int attempt, Long retryAfterMs) {
+        long base = subscription.getRetryBaseDelayMs() != null ? subscription.getRetryBaseDelayMs() : defaultBaseDelayMs;
+        long cap = subscription.getRetryMaxDelayMs() != null ? subscription.getRetryMaxDelayMs() : defaultMaxDelayMs;
+        int exponent = Math.min(Math.max(attempt - 2, 0), 30);
+        long ceiling = Math.min(cap, base << exponent);
+        long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+        if (retryAfterMs != null) {
+            delay = Math.max(delay, Math.min(retryAfterMs, maxRetryAfterSeconds * 1000));
+        }
+        return delay;
+    }
+
+    /**
+     * Stores the message to be re-published after the delay. The message is stored as is, so
+     * callers bump the attempt number beforehand when a new attempt is being scheduled.
+     * <p>
+     * If Redis cannot take it, the message goes through the broker's 10s retry queue instead,
+     * ignoring the delay.
+     *
+     * @throws IllegalStateException if neither Redis nor the broker took the message
+     */
+    public void schedule(WebhookMessage message, long delayMs) {
+        String member;
+        try {
+            member = objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize retry of task " + message.getDeliveryTaskId(), e);
+        }
+        try {
+            redisTemplate.opsForZSet().add(RETRY_KEY, member, System.currentTimeMillis() + delayMs);
+            return;
+        } catch (DataAccessException e) {
+            logger.warn("Failed to schedule retry of task {}, falling back to the broker retry queue: {}",
+                    message.getDeliveryTaskId(), e.getMessage());
+        }
+        if (!deliveryPublisher.publishToRetryQueue(message)) {
+            throw new IllegalStateException("Could not schedule retry of task " + message.getDeliveryTaskId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.retry.poll-interval-ms}")
+    public void publishDue() {
+        int claimed;
+        do {
+            long now = System.currentTimeMillis();
+            List<String> due = claim(now);
+            claimed = due.size();
+            if (claimed > 0) {
+                republish(due);
+            }
+        } while (claimed == batchSize);
+    }
+
+    private List<String> claim(long now) {
+        try {
+            List<String> due = redisTemplate.execute(CLAIM_DUE, List.of(RETRY_KEY),
+                    String.valueOf(now), String.valueOf(batchSize), String.valueOf(now + claimLeaseMs));
+            return due != null ? due : List.of();
+        } catch (Exception e) {
+            logger.warn("Failed to claim due retries: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void republish(List<String> due) {
+        List<String> members = new ArrayList<>(due.size());
+        List<WebhookMessage> messages = new ArrayList<>(due.size());
+        List<String> done = new ArrayList<>();
+        for (String member : due) {
+            try {
+                messages.add(objectMapper.readValue(member, WebhookMessage.class));
+                members.add(member);
+            } catch (JsonProcessingException e) {
+                logger.error("Discarding unreadable retry entry: {}", e.getMessage());
+                done.add(member);
+            }
+        }
+
+        if (!messages.isEmpty()) {
+            List<Boolean> confirmed = deliveryPublisher.publishConfirmed(messages);
+            for (int i = 0; i < members.size(); i++) {
+                if (confirmed.get(i)) {
+                    done.add(members.get(i));
+                }
+            }
+            if (done.size() < due.size()) {
+                // The rest stay claimed and become due again when their lease runs out
+                logger.warn("{} of {} due retries were not confirmed by the broker", due.size() - done.size(), due.size());
+            }
+        }
+        if (!done.isEmpty()) {
+            redisTemplate.opsForZSet().remove(RETRY_KEY, done.toArray());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisScript<List<String>> claimDueScript() {
+        DefaultRedisScript<List<String>> script = new DefaultRedisScript<>();
+        script.setScriptText("local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) "
+                + "for _, member in ipairs(due) do redis.call('ZADD', KEYS[1], 'XX', ARGV[3], member) end "
+                + "return due");
+        script.setResultType((Class<List<String>>) (Class<?>) List.class);
+        return script;
+    }
+}
@@ -1,17 +1,113 @@
 package com.example.webhook_delivery.service;
 
-import org.apache.commons.codec.digest.HmacAlgorithms;
-import org.apache.commons.codec.digest.HmacUtils;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * HMAC-SHA256 signatures for webhook payloads.
+ * <p>
+ * Initialising a {@link Mac} is the expensive part of signing, so each thread keeps a small
+ * LRU of initialised instances keyed by subscription (or secret, for verification) and only
+ * re-keys one when its secret changes.
+ */
 @Service
 public class SignatureService {
 
+    public static final String SIGNATURE_HEADER = "X-HookHub-Signature";
+    public static final String TIMESTAMP_HEADER = "X-HookHub-Timestamp";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String PREFIX = "sha256=";
+    private static final int MACS_PER_THREAD = 256;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<Map<Object, KeyedMac>> MACS = ThreadLocal.withInitial(() ->
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, KeyedMac> eldest) {
+                    return size() > MACS_PER_THREAD;
+                }
+            });
+
+    /**
+     * Signs {@code timestamp + "." + payload}, so a captured request can't be replayed with a
+     * different timestamp.
+     *
+     * @param cacheKey identifies the secret's owner, typically the subscription ID
+     * @return the {@value #SIGNATURE_HEADER} header value
+     */
+    public String sign(Object cacheKey, String secret, long timestamp, byte[] payload) {
+        Mac mac = mac(cacheKey, secret);
+        mac.update(Long.toString(timestamp).getBytes(StandardCharsets.US_ASCII));
+        mac.update((byte) '.');
+        mac.update(payload);
+        return PREFIX + hex(mac.doFinal());
+    }
+
     public boolean isValidSignature(String payload, String secret, String signatureHeader) {
-        if (signatureHeader == null || !signatureHeader.startsWith("sha256=")) {
+        if (signatureHeader == null || !signatureHeader.startsWith(PREFIX)) {
             return false;
         }
-        String expectedSignature = "sha256=" + new HmacUtils(HmacAlgorithms.HMAC_SHA_256, secret).hmacHex(payload);
-        return signatureHeader.equals(expectedSignature);
+        byte[] expected = mac(secret, secret).doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        byte[] actual = unhex(signatureHeader.substring(PREFIX.length()));
+        // Constant-time comparison; a malformed header compares against an empty array
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    private static Mac mac(Object cacheKey, String secret) {
+        Map<Object, KeyedMac> macs = MACS.get();
+        KeyedMac keyed = macs.get(cacheKey);
+        if (keyed == null || !keyed.secret.equals(secret)) {
+            keyed = new KeyedMac(secret, newMac(secret));
+            macs.put(cacheKey, keyed);
+        }
+        // doFinal() resets the instance, so a cached Mac is always ready for a new message
+        return keyed.mac;
+    }
+
+    private static Mac newMac(String secret) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("Cannot initialise " + ALGORITHM, e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        byte[] out = new byte[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            out[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(out, StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] unhex(String hex) {
+        if (hex.length() % 2 != 0) {
+            return new byte[0];
+        }
+        byte[] out = new byte[hex.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return new byte[0];
+            }
+            out[i] = (byte) ((high << 4) | low);
+        }
+        return out;
+    }
+
+    private record KeyedMac(String secret, Mac mac) {
     }
 }
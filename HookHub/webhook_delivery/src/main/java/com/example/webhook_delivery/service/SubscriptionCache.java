@@ -0,0 +1,162 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.config.RedisConfig;
+import com.example.webhook_delivery.entity.Subscription;
+import com.example.webhook_delivery.repository.SubscriptionRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Near-cache for subscription lookups by ID: a bounded local Caffeine tier in front of the
+ * shared Redis cache, in front of Postgres. Unknown IDs are cached as empty so a flood of
+ * bogus subscription IDs never reaches the database.
+ */
+@Service
+public class SubscriptionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionCache.class);
+
+    private final SubscriptionRepository subscriptionRepository;
+    private final CacheManager cacheManager;
+    private final LoadingCache<UUID, Optional<Subscription>> local;
+    private final Counter sharedHits;
+    private final Counter sharedMisses;
+
+    public SubscriptionCache(SubscriptionRepository subscriptionRepository,
+                             CacheManager cacheManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.subscription-cache.max-size}") long maxSize,
+                             @Value("${app.subscription-cache.ttl-seconds}") long ttlSeconds,
+                             @Value("${app.subscription-cache.negative-ttl-seconds}") long negativeTtlSeconds) {
+        this.subscriptionRepository = subscriptionRepository;
+        this.cacheManager = cacheManager;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new PositiveNegativeExpiry(Duration.ofSeconds(ttlSeconds), Duration.ofSeconds(negativeTtlSeconds)))
+                .recordStats()
+                .build(this::loadShared);
+        CaffeineCacheMetrics.monitor(meterRegistry, local, "subscriptionsById.local");
+        this.sharedHits = Counter.builder("hookhub.subscription.cache.shared").tag("result", "hit").register(meterRegistry);
+        this.sharedMisses = Counter.builder("hookhub.subscription.cache.shared").tag("result", "miss").register(meterRegistry);
+    }
+
+    public Subscription get(UUID id) {
+        if (id == null) {
+            return null;
+        }
+        return local.get(id).orElse(null);
+    }
+
+    /**
+     * Resolves many IDs at once; local misses are loaded from Postgres in a single query.
+     */
+    public Map<UUID, Subscription> getAll(Collection<UUID> ids) {
+        Map<UUID, Subscription> found = new HashMap<>();
+        local.getAll(ids, this::loadAllFromDatabase).forEach((id, subscription) ->
+                subscription.ifPresent(s -> found.put(id, s)));
+        return found;
+    }
+
+    // Before SubscriptionChangeBroadcaster: other nodes must not reload the old entry from Redis
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSubscriptionChanged(SubscriptionChangedEvent event) {
+        local.invalidate(event.getSubscriptionId());
+        if (!event.isRemote()) {
+            try {
+                sharedCache().evict(event.getSubscriptionId());
+            } catch (RuntimeException e) {
+                logger.warn("Failed to evict subscription {} from Redis: {}", event.getSubscriptionId(), e.getMessage());
+            }
+        }
+    }
+
+    private Optional<Subscription> loadShared(UUID id) {
+        Cache shared = sharedCache();
+        try {
+            Cache.ValueWrapper cached = shared.get(id);
+            if (cached != null) {
+                sharedHits.increment();
+                return Optional.ofNullable((Subscription) cached.get());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Redis lookup for subscription {} failed, falling back to database: {}", id, e.getMessage());
+        }
+        sharedMisses.increment();
+        Subscription subscription = subscriptionRepository.findById(id).orElse(null);
+        putShared(shared, id, subscription);
+        return Optional.ofNullable(subscription);
+    }
+
+    private Map<UUID, Optional<Subscription>> loadAllFromDatabase(Set<? extends UUID> ids) {
+        Map<UUID, Optional<Subscription>> loaded = new HashMap<>();
+        for (UUID id : ids) {
+            loaded.put(id, Optional.empty());
+        }
+        for (Subscription subscription : subscriptionRepository.findAllById(List.copyOf(ids))) {
+            loaded.put(subscription.getId(), Optional.of(subscription));
+        }
+        Cache shared = sharedCache();
+        loaded.forEach((id, subscription) -> putShared(shared, id, subscription.orElse(null)));
+        return loaded;
+    }
+
+    private void putShared(Cache shared, UUID id, Subscription subscription) {
+        try {
+            shared.put(id, subscription);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to cache subscription {} in Redis: {}", id, e.getMessage());
+        }
+    }
+
+    private Cache sharedCache() {
+        return cacheManager.getCache(RedisConfig.SUBSCRIPTIONS_BY_ID_CACHE);
+    }
+
+    private static final class PositiveNegativeExpiry implements Expiry<UUID, Optional<Subscription>> {
+        private final long positiveNanos;
+        private final long negativeNanos;
+
+        PositiveNegativeExpiry(Duration positive, Duration negative) {
+            this.positiveNanos = positive.toNanos();
+            this.negativeNanos = negative.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(UUID key, Optional<Subscription> value, long currentTime) {
+            return value.isPresent() ? positiveNanos : negativeNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(UUID key, Optional<Subscription> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(UUID key, Optional<Subscription> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.config.NodeIdentity;
+import com.example.webhook_delivery.config.RedisConfig;
+import com.example.webhook_delivery.repository.SubscriptionRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Relays local subscription changes to other nodes over Redis pub/sub and turns
+ * their notifications back into {@link SubscriptionChangedEvent}s on this node.
+ */
+@Service
+@RequiredArgsConstructor
+public class SubscriptionChangeBroadcaster implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionChangeBroadcaster.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final SubscriptionRepository subscriptionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final NodeIdentity nodeIdentity;
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(RedisConfig.SUBSCRIPTION_CHANGES_CHANNEL));
+    }
+
+    // After SubscriptionCache has evicted the shared entry
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLocalChange(SubscriptionChangedEvent event) {
+        if (event.isRemote()) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(RedisConfig.SUBSCRIPTION_CHANGES_CHANNEL,
+                    nodeIdentity.getId() + ":" + event.getSubscriptionId());
+        } catch (Exception e) {
+            // Other nodes catch up on their next periodic resync
+            logger.warn("Failed to broadcast change of subscription {}: {}", event.getSubscriptionId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(':');
+        if (separator < 0 || body.substring(0, separator).equals(nodeIdentity.getId())) {
+            return;
+        }
+        try {
+            UUID subscriptionId = UUID.fromString(body.substring(separator + 1));
+            eventPublisher.publishEvent(new SubscriptionChangedEvent(subscriptionId,
+                    subscriptionRepository.findById(subscriptionId).orElse(null), true));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Ignoring malformed subscription change notification: {}", body);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.entity.Subscription;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Published whenever a subscription is created, updated or deleted, either by this node
+ * or, with {@code remote} set, by another node via Redis.
+ */
+@Getter
+@AllArgsConstructor
+public class SubscriptionChangedEvent {
+    private final UUID subscriptionId;
+    private final Subscription subscription; // null when the subscription was deleted
+    private final boolean remote;
+}
@@ -0,0 +1,151 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.entity.Subscription;
+import com.example.webhook_delivery.repository.SubscriptionRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Local, immutable index from event type to the subscriptions that should receive it.
+ * <p>
+ * Readers always see a complete snapshot; changes build a new snapshot and swap it in.
+ * A subscription's event type may be exact ({@code order.created}), a prefix pattern
+ * ending in {@code *} ({@code order.*}) or {@code *} on its own to receive everything.
+ */
+@Service
+@RequiredArgsConstructor
+public class SubscriptionRoutingIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionRoutingIndex.class);
+    private static final String WILDCARD = "*";
+
+    private final SubscriptionRepository subscriptionRepository;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Returns every subscription whose event type matches, exact matches first.
+     */
+    public List<Subscription> lookup(String eventType) {
+        Snapshot current = currentSnapshot();
+        List<Subscription> matches = new ArrayList<>(current.exact.getOrDefault(eventType, List.of()));
+        if (!current.prefixes.isEmpty()) {
+            for (int length = 0; length <= eventType.length(); length++) {
+                List<Subscription> byPrefix = current.prefixes.get(eventType.substring(0, length));
+                if (byPrefix != null) {
+                    matches.addAll(byPrefix);
+                }
+            }
+        }
+        return matches;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.routing.resync-interval-ms}", initialDelayString = "${app.routing.resync-interval-ms}")
+    public synchronized void rebuild() {
+        Snapshot rebuilt = Snapshot.of(subscriptionRepository.findAll());
+        snapshot = rebuilt;
+        logger.info("Routing index rebuilt with {} subscriptions", rebuilt.byId.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onSubscriptionChanged(SubscriptionChangedEvent event) {
+        snapshot = currentSnapshot().with(event.getSubscriptionId(), event.getSubscription());
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    rebuild();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static final class Snapshot {
+        private final Map<UUID, Subscription> byId;
+        private final Map<String, List<Subscription>> exact;
+        private final Map<String, List<Subscription>> prefixes;
+
+        private Snapshot(Map<UUID, Subscription> byId, Map<String, List<Subscription>> exact,
+                         Map<String, List<Subscription>> prefixes) {
+            this.byId = byId;
+            this.exact = exact;
+            this.prefixes = prefixes;
+        }
+
+        static Snapshot of(Collection<Subscription> subscriptions) {
+            Map<UUID, Subscription> byId = new HashMap<>();
+            Map<String, List<Subscription>> exact = new HashMap<>();
+            Map<String, List<Subscription>> prefixes = new HashMap<>();
+            for (Subscription subscription : subscriptions) {
+                if (subscription.getEventType() == null) {
+                    continue;
+                }
+                byId.put(subscription.getId(), subscription);
+                bucketsFor(subscription, exact, prefixes)
+                        .computeIfAbsent(keyOf(subscription), k -> new ArrayList<>()).add(subscription);
+            }
+            exact.replaceAll((k, v) -> List.copyOf(v));
+            prefixes.replaceAll((k, v) -> List.copyOf(v));
+            return new Snapshot(byId, exact, prefixes);
+        }
+
+        /**
+         * Copy-on-write update: only the buckets touched by the old and new version are rebuilt.
+         */
+        Snapshot with(UUID subscriptionId, Subscription updated) {
+            Map<UUID, Subscription> newById = new HashMap<>(byId);
+            Map<String, List<Subscription>> newExact = new HashMap<>(exact);
+            Map<String, List<Subscription>> newPrefixes = new HashMap<>(prefixes);
+
+            Subscription previous = newById.remove(subscriptionId);
+            if (previous != null) {
+                Map<String, List<Subscription>> buckets = bucketsFor(previous, newExact, newPrefixes);
+                List<Subscription> remaining = new ArrayList<>(buckets.get(keyOf(previous)));
+                remaining.removeIf(s -> s.getId().equals(subscriptionId));
+                if (remaining.isEmpty()) {
+                    buckets.remove(keyOf(previous));
+                } else {
+                    buckets.put(keyOf(previous), List.copyOf(remaining));
+                }
+            }
+            if (updated != null && updated.getEventType() != null) {
+                newById.put(subscriptionId, updated);
+                Map<String, List<Subscription>> buckets = bucketsFor(updated, newExact, newPrefixes);
+                List<Subscription> bucket = new ArrayList<>(buckets.getOrDefault(keyOf(updated), List.of()));
+                bucket.add(updated);
+                buckets.put(keyOf(updated), List.copyOf(bucket));
+            }
+            return new Snapshot(newById, newExact, newPrefixes);
+        }
+
+        private static Map<String, List<Subscription>> bucketsFor(Subscription subscription,
+                                                                  Map<String, List<Subscription>> exact,
+                                                                  Map<String, List<Subscription>> prefixes) {
+            return subscription.getEventType().endsWith(WILDCARD) ? prefixes : exact;
+        }
+
+        private static String keyOf(Subscription subscription) {
+            String eventType = subscription.getEventType();
+            return eventType.endsWith(WILDCARD) ? eventType.substring(0, eventType.length() - WILDCARD.length()) : eventType;
+        }
+    }
+}
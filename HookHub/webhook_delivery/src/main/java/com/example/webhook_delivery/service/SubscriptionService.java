@@ -7,7 +7,9 @@ import com.example.webhook_delivery.repository.SubscriptionRepository;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.BeanUtils;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import java.util.List;
 import java.util.UUID;
@@ -17,6 +19,8 @@ import java.util.UUID;
 public class SubscriptionService {
 
     private final SubscriptionRepository subscriptionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SubscriptionCache subscriptionCache;
 
     @Cacheable(value = "subscriptionsByEvent", key = "#eventType", condition = "#eventType != null")
     public List<Subscription> findByEventType(String eventType) {
@@ -27,7 +31,7 @@ public class SubscriptionService {
     }
 
     public Subscription findById(UUID id) {
-        return subscriptionRepository.findById(id).orElse(null);
+        return subscriptionCache.get(id);
     }
 
     public List<SubscriptionResponseDto> list() {
@@ -48,30 +52,36 @@ public class SubscriptionService {
     }
 
     @Transactional
+    @CacheEvict(value = "subscriptionsByEvent", allEntries = true)
     public SubscriptionResponseDto createSubscription(SubscriptionRequestDto subscription) {
         Subscription newSubscription = new Subscription();
         BeanUtils.copyProperties(subscription, newSubscription);
         Subscription savedSubscription = subscriptionRepository.save(newSubscription);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(savedSubscription.getId(), savedSubscription, false));
         SubscriptionResponseDto dto = new SubscriptionResponseDto();
         BeanUtils.copyProperties(savedSubscription, dto);
         return dto;
     }
 
     @Transactional
+    @CacheEvict(value = "subscriptionsByEvent", allEntries = true)
     public SubscriptionResponseDto updateSubscription(UUID id, SubscriptionRequestDto updatedSubscription) {
         Subscription existingSubscription = subscriptionRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Subscription not found with id: " + id));
         BeanUtils.copyProperties(updatedSubscription, existingSubscription, "id");
         Subscription savedSubscription = subscriptionRepository.save(existingSubscription);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(id, savedSubscription, false));
         SubscriptionResponseDto dto = new SubscriptionResponseDto();
         BeanUtils.copyProperties(savedSubscription, dto);
         return dto;
     }
 
     @Transactional
+    @CacheEvict(value = "subscriptionsByEvent", allEntries = true)
     public void deleteSubscription(UUID id) {
         Subscription subscription = subscriptionRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Subscription not found with id: " + id));
         subscriptionRepository.delete(subscription);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(id, null, false));
     }
 }
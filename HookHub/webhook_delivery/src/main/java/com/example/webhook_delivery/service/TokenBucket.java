@@ -0,0 +1,58 @@
+package com.example.webhook_delivery.service;
+
+/**
+ * Token bucket refilled continuously at {@code ratePerSecond}, holding at most one second's
+ * worth of tokens. Not thread-safe; callers synchronize.
+ */
+class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private double ratePerSecond;
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(double ratePerSecond, long nowNanos) {
+        this.ratePerSecond = ratePerSecond;
+        this.tokens = ratePerSecond;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    void setRate(double ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+        this.tokens = Math.min(tokens, ratePerSecond);
+    }
+
+    boolean hasToken(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= 1.0;
+    }
+
+    /**
+     * Whether the bucket is back to its capacity, so a new bucket would behave the same.
+     */
+    boolean isFull(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= ratePerSecond;
+    }
+
+    void consume() {
+        tokens -= 1.0;
+    }
+
+    /**
+     * Nanoseconds until the next whole token is available, 0 if one is available now.
+     */
+    long nanosUntilToken(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= 1.0 ? 0 : (long) ((1.0 - tokens) / ratePerSecond * NANOS_PER_SECOND);
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(ratePerSecond, tokens + elapsed * ratePerSecond / NANOS_PER_SECOND);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.webhook_delivery.service;
+
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal W3C Trace Context ({@code traceparent}) handling, so a delivery can be correlated
+ * with the request that produced it without a tracing library.
+ */
+public final class TraceContext {
+
+    public static final String HEADER = "traceparent";
+
+    private static final Pattern TRACEPARENT = Pattern.compile("00-(?!0{32})[0-9a-f]{32}-(?!0{16})[0-9a-f]{16}-[0-9a-f]{2}");
+    private static final HexFormat HEX = HexFormat.of();
+
+    private TraceContext() {
+    }
+
+    /**
+     * The caller's trace context if it is valid, otherwise the root of a new sampled trace.
+     */
+    public static String continueOrStart(String traceparent) {
+        if (traceparent != null && TRACEPARENT.matcher(traceparent.trim()).matches()) {
+            return traceparent.trim();
+        }
+        return "00-" + randomHex(16) + "-" + randomHex(8) + "-01";
+    }
+
+    /**
+     * A new span in the same trace, for one outgoing request.
+     */
+    public static String childOf(String traceparent) {
+        String parent = continueOrStart(traceparent);
+        return parent.substring(0, 36) + randomHex(8) + parent.substring(52);
+    }
+
+    private static String randomHex(int bytes) {
+        byte[] value = new byte[bytes];
+        do {
+            ThreadLocalRandom.current().nextBytes(value);
+        } while (isZero(value));
+        return HEX.formatHex(value);
+    }
+
+    private static boolean isZero(byte[] value) {
+        for (byte b : value) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,118 +1,484 @@
 package com.example.webhook_delivery.service;
 
-import com.example.webhook_delivery.config.RabbitMQConfig;
 import com.example.webhook_delivery.entity.Subscription;
 import com.example.webhook_delivery.entity.WebhookDeliveryLog;
+import com.example.webhook_delivery.rabbitmq.ChannelAckTracker;
+import com.example.webhook_delivery.rabbitmq.PayloadCompression;
 import com.example.webhook_delivery.rabbitmq.WebhookMessage;
-import com.example.webhook_delivery.repository.WebhookDeliveryLogRepository;
+import com.example.webhook_delivery.rabbitmq.WebhookMessageConverter;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.rabbitmq.client.Channel;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @RequiredArgsConstructor
 public class WebhookDeliveryWorker {
 
     private static final Logger logger = LoggerFactory.getLogger(WebhookDeliveryWorker.class);
+    private static final long REQUEUE_PAUSE_MS = 200;
 
     private final SubscriptionService subscriptionService;
-    private final WebhookDeliveryLogRepository logRepository;
-    private final RabbitTemplate rabbitTemplate;
+    private final DeliveryLogWriter logWriter;
     private final RestTemplate restTemplate;
+    private final DeliveryEngine deliveryEngine;
+    private final EndpointHealthRegistry endpointHealth;
+    private final FairDeliveryScheduler scheduler;
+    private final RetryScheduler retryScheduler;
+    private final SignatureService signatureService;
+    private final PayloadStore payloadStore;
+    private final OrderedDeliverySequencer sequencer;
+    private final DeliveryMetrics metrics;
+    private final DeliveryStatsAggregator stats;
+    private final LiveStatusBroadcaster liveStatus;
 
-    @Value("${app.webhook.max-retries}")
-    private int maxRetries;
+    private final MessageConverter messageConverter;
+    private final Map<Channel, ChannelAckTracker> ackTrackers = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean draining;
 
-    @RabbitListener(queues = "${app.rabbitmq.queue}")
-    public void handleDelivery(WebhookMessage message) {
-        if (message == null || message.getDeliveryTaskId() == null || message.getPayload() == null) {
-            logger.warn("⚠️ Received invalid or empty message — skipping processing.");
+    @Value("${app.payload.compress-threshold-bytes}")
+    private int gzipThresholdBytes;
+
+    @Value("${app.rabbitmq.listener.messages-per-ack}")
+    private int messagesPerAck;
+
+    @Value("${app.delivery.shutdown-timeout-seconds}")
+    private long shutdownTimeoutSeconds;
+
+    @Value("${app.rabbitmq.max-dead-letter-cycles}")
+    private int maxDeadLetterCycles;
+
+    /**
+     * Takes a batch from a delivery shard and hands each message on without waiting for it.
+     * Messages are settled through the channel's {@link ChannelAckTracker} once their delivery
+     * attempt has run and its log row is written.
+     *
+     * @return completed once every message of the batch has been settled
+     */
+    public CompletableFuture<Void> handleDeliveries(List<Message> batch, Channel channel) {
+        if (draining) {
+            requeue(batch, channel);
+            return CompletableFuture.completedFuture(null);
+        }
+        ChannelAckTracker tracker = ackTracker(channel);
+        for (Message amqpMessage : batch) {
+            tracker.register(amqpMessage.getMessageProperties().getDeliveryTag());
+        }
+        CompletableFuture<?>[] settled = new CompletableFuture<?>[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            Message amqpMessage = batch.get(i);
+            long deliveryTag = amqpMessage.getMessageProperties().getDeliveryTag();
+            inFlight.incrementAndGet();
+            CompletableFuture<Void> done;
+            try {
+                done = process(amqpMessage);
+            } catch (Exception e) {
+                done = CompletableFuture.failedFuture(e);
+            }
+            settled[i] = done.handle((ignored, error) -> {
+                try {
+                    if (error == null) {
+                        tracker.ack(deliveryTag);
+                    } else if (causedBy(error, CancellationException.class) || causedBy(error, RetryUnavailableException.class)) {
+                        // Stopped before it was attempted, or its retry could not be stored: straight back to the queue
+                        tracker.reject(deliveryTag, true);
+                    } else {
+                        long cycles = deadLetterCycles(amqpMessage);
+                        if (cycles >= maxDeadLetterCycles) {
+                            logger.error("Giving up on task {} after {} dead-letter cycles, last error: {}",
+                                    amqpMessage.getMessageProperties().getHeader(WebhookMessageConverter.HEADER_DELIVERY_TASK_ID),
+                                    cycles, error.getMessage());
+                            releaseOrderedLane(amqpMessage);
+                            tracker.ack(deliveryTag);
+                        } else {
+                            logger.error("Delivery tag {} failed unexpectedly: {}", deliveryTag, error.getMessage());
+                            // Not requeued: dead-lettered through the 10s retry queue, which routes it back to the shard
+                            tracker.reject(deliveryTag, false);
+                        }
+                    }
+                } finally {
+                    // Also when settling fails, e.g. on a closed channel, so drain() does not wait on it
+                    inFlight.decrementAndGet();
+                }
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(settled);
+    }
+
+    /**
+     * How often the message has been rejected and dead-lettered so far, per its {@code x-death}
+     * header; the 10s retry queue hands it back unchanged, so only this bounds the cycles.
+     */
+    private static long deadLetterCycles(Message amqpMessage) {
+        List<Map<String, ?>> deaths = amqpMessage.getMessageProperties().getXDeathHeader();
+        long cycles = 0;
+        if (deaths != null) {
+            for (Map<String, ?> death : deaths) {
+                if ("rejected".equals(String.valueOf(death.get("reason"))) && death.get("count") instanceof Number count) {
+                    cycles += count.longValue();
+                }
+            }
+        }
+        return cycles;
+    }
+
+    /**
+     * An ordered subscription's lane waits for the retry of a head that failed unexpectedly;
+     * once the head is given up on, nothing else would let the events behind it through.
+     */
+    private void releaseOrderedLane(Message amqpMessage) {
+        MessageProperties properties = amqpMessage.getMessageProperties();
+        Object subscriptionId = properties.getHeader(WebhookMessageConverter.HEADER_SUBSCRIPTION_ID);
+        Object taskId = properties.getHeader(WebhookMessageConverter.HEADER_DELIVERY_TASK_ID);
+        if (subscriptionId == null || taskId == null) {
             return;
         }
+        try {
+            sequencer.abandon(UUID.fromString(subscriptionId.toString()), UUID.fromString(taskId.toString()));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to release the ordered lane of task {}: {}", taskId, e.getMessage());
+        }
+    }
+
+    private static boolean causedBy(Throwable error, Class<? extends Throwable> type) {
+        return type.isInstance(error) || type.isInstance(error.getCause());
+    }
+
+    /**
+     * Hands a batch back to the queue without attempting any of it. Skipped messages still go
+     * through the channel's tracker so no later multiple ack settles them by mistake. Called on
+     * the consumer thread, which then pauses briefly: while this node is still the queue's
+     * active consumer the broker redelivers the batch straight back to it.
+     */
+    public void requeue(List<Message> batch, Channel channel) {
+        ChannelAckTracker tracker = ackTracker(channel);
+        for (Message amqpMessage : batch) {
+            tracker.register(amqpMessage.getMessageProperties().getDeliveryTag());
+        }
+        for (Message amqpMessage : batch) {
+            tracker.reject(amqpMessage.getMessageProperties().getDeliveryTag(), true);
+        }
+        try {
+            Thread.sleep(REQUEUE_PAUSE_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ChannelAckTracker ackTracker(Channel channel) {
+        ChannelAckTracker tracker = ackTrackers.get(channel);
+        if (tracker == null) {
+            // A new consumer channel; forget the ones closed since, their tags died with them
+            ackTrackers.values().removeIf(existing -> !existing.isOpen());
+            tracker = ackTrackers.computeIfAbsent(channel, c -> new ChannelAckTracker(c, messagesPerAck));
+        }
+        return tracker;
+    }
+
+    /**
+     * Waits for messages already taken from the queue to be settled while their channels are
+     * still open; the listener containers close them when they stop right after this.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void drain() {
+        draining = true;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(shutdownTimeoutSeconds);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (inFlight.get() > 0) {
+            logger.warn("{} deliveries still unsettled after {}s, the broker will redeliver them", inFlight.get(), shutdownTimeoutSeconds);
+        }
+    }
+
+    private CompletableFuture<Void> process(Message amqpMessage) {
+        WebhookMessage message;
+        try {
+            message = (WebhookMessage) messageConverter.fromMessage(amqpMessage);
+        } catch (RuntimeException e) {
+            message = null;
+        }
+        if (message == null || message.getDeliveryTaskId() == null
+                || (message.getPayload() == null && message.getPayloadRef() == null)) {
+            logger.warn("⚠️ Received invalid or empty message — skipping processing.");
+            return CompletableFuture.completedFuture(null);
+        }
 
         logger.info("Processing delivery task: {}", message.getDeliveryTaskId());
+        if (message.getEnqueuedAt() > 0) {
+            metrics.recordStage("broker", System.currentTimeMillis() - message.getEnqueuedAt());
+        }
         
         // Get the specific subscription for this webhook
         Subscription sub = subscriptionService.findById(message.getSubscriptionId());
         if (sub == null) {
             logger.error("Subscription {} not found for task {}", message.getSubscriptionId(), message.getDeliveryTaskId());
-            return;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (Boolean.TRUE.equals(sub.getOrdered())) {
+            return sequencer.submit(message, next -> attempt(next, sub));
+        }
+        return attempt(message, sub).thenApply(retrying -> null);
+    }
+
+    /**
+     * Parks the message if the endpoint's circuit is open, otherwise queues an attempt behind
+     * this subscription's fair share and hands the HTTP call to the engine.
+     *
+     * @return completed once the attempt has run and its log row is written, with {@code true}
+     *         if the message was scheduled for a later attempt
+     */
+    private CompletableFuture<Boolean> attempt(WebhookMessage message, Subscription sub) {
+        String host = hostOf(sub.getTargetUrl());
+        if (!endpointHealth.tryAcquirePermission(host)) {
+            // Circuit is open: park the message without calling the endpoint or using up an attempt
+            try {
+                parkForOpenCircuit(message, sub, host);
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(new RetryUnavailableException(message, e));
+            }
+            return CompletableFuture.completedFuture(true);
         }
 
+        int cost = 1 + payloadStore.sizeHint(message) / 1024;
+        CompletableFuture<Boolean> logged = new CompletableFuture<>();
+        return scheduler.schedule(sub, cost, () -> deliveryEngine.submit(host,
+                        () -> deliver(message, sub, host).whenComplete((retrying, error) -> {
+                            if (error != null) {
+                                logged.completeExceptionally(error);
+                            } else {
+                                logged.complete(Boolean.TRUE.equals(retrying));
+                            }
+                        })))
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        // Rejected or cancelled before the call was made
+                        endpointHealth.releasePermission(host);
+                    }
+                })
+                .thenCompose(ignored -> logged);
+    }
+
+    /**
+     * Makes one delivery attempt.
+     *
+     * @return a future completed once the attempt's log row has been written, with {@code true}
+     *         if a retry was scheduled, or failed with {@link RetryUnavailableException} if the
+     *         retry could not be stored anywhere and the message has to go back to the queue
+     */
+    private CompletableFuture<Boolean> deliver(WebhookMessage message, Subscription sub, String host) {
         WebhookDeliveryLog log = new WebhookDeliveryLog(message.getDeliveryTaskId(), sub.getId(), sub.getTargetUrl(), message.getAttempt());
+        byte[] body;
         try {
+            body = payloadStore.resolve(message);
+        } catch (Exception e) {
+            // Nothing to send, and retrying won't bring the payload back
+            log.setOutcome("FAILURE");
+            log.setErrorDetails("Payload unavailable: " + e.getMessage());
+            logger.error("Payload of task {} unavailable: {}", message.getDeliveryTaskId(), e.getMessage());
+            endpointHealth.releasePermission(host);
+            metrics.recordOutcome(sub.getId(), log.getAttemptNumber(), message.getIngestedAt(), log.getOutcome());
+            stats.record(log);
+            liveStatus.publish(log);
+            return logWriter.append(log).thenApply(ignored -> false);
+        }
+
+        long startedAt = System.currentTimeMillis();
+        if (message.getEnqueuedAt() > 0) {
+            log.setQueueWaitMs(Math.max(0, startedAt - message.getEnqueuedAt()));
+            metrics.recordStage("queue", log.getQueueWaitMs());
+        }
+        if (message.getFirstAttemptAt() == 0) {
+            // Carried on retries from here, so later attempts still know when the first one ran
+            message.setFirstAttemptAt(startedAt);
+            if (message.getIngestedAt() > 0) {
+                metrics.recordStage("first_attempt", startedAt - message.getIngestedAt());
+            }
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<Void> logged = null;
+        RetryUnavailableException retryUnavailable = null;
+        try {
+            // The payload bytes are signed as they are; gzip, if any, is only a transfer encoding
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<String> entity = new HttpEntity<>(message.getPayload(), headers);
+            headers.set(TraceContext.HEADER, TraceContext.childOf(message.getTraceparent()));
+            if (sub.getSecretKey() != null && !sub.getSecretKey().isEmpty()) {
+                long timestamp = System.currentTimeMillis() / 1000;
+                headers.set(SignatureService.TIMESTAMP_HEADER, Long.toString(timestamp));
+                headers.set(SignatureService.SIGNATURE_HEADER,
+                        signatureService.sign(sub.getId(), sub.getSecretKey(), timestamp, body));
+            }
+            byte[] requestBody = body;
+            if (Boolean.TRUE.equals(sub.getAcceptsGzip()) && body.length >= gzipThresholdBytes) {
+                requestBody = PayloadCompression.gzip(body);
+                headers.set(HttpHeaders.CONTENT_ENCODING, PayloadCompression.GZIP);
+            }
+            HttpEntity<byte[]> entity = new HttpEntity<>(requestBody, headers);
 
             ResponseEntity<String> response = restTemplate.postForEntity(sub.getTargetUrl(), entity, String.class);
 
+            metrics.recordHttp(host, response.getStatusCode().value(), System.nanoTime() - start);
             log.setHttpStatusCode(response.getStatusCode().value());
             log.setOutcome("SUCCESS");
+            endpointHealth.recordSuccess(host, elapsedMs(start));
             logger.info("Successfully delivered webhook {} to {}", message.getDeliveryTaskId(), sub.getTargetUrl());
 
         } catch (HttpStatusCodeException e) {
+            metrics.recordHttp(host, e.getStatusCode().value(), System.nanoTime() - start);
             log.setHttpStatusCode(e.getStatusCode().value());
             log.setErrorDetails(e.getResponseBodyAsString());
-            handleFailure(message, log);
+            // Client errors mean the endpoint is up; only overload and server errors count against it
+            if (e.getStatusCode().is5xxServerError() || e.getStatusCode().value() == 429) {
+                endpointHealth.recordFailure(host, elapsedMs(start));
+            } else {
+                endpointHealth.recordSuccess(host, elapsedMs(start));
+            }
+            retryUnavailable = handleFailure(message, sub, log, retryAfterMs(e.getResponseHeaders()));
         } catch (ResourceAccessException e) { // Network errors, timeouts
+            metrics.recordHttp(host, null, System.nanoTime() - start);
             log.setErrorDetails("Network Error: " + e.getMessage());
-            handleFailure(message, log);
+            endpointHealth.recordFailure(host, elapsedMs(start));
+            retryUnavailable = handleFailure(message, sub, log, null);
         } catch (Exception e) {
+            metrics.recordHttp(host, null, System.nanoTime() - start);
             log.setErrorDetails("An unexpected error occurred: " + e.getMessage());
-            handleFailure(message, log);
+            endpointHealth.recordFailure(host, elapsedMs(start));
+            retryUnavailable = handleFailure(message, sub, log, null);
         } finally {
-            logRepository.save(log);
+            log.setHttpMs(elapsedMs(start));
+            if (message.getIngestedAt() > 0) {
+                log.setEndToEndMs(Math.max(0, System.currentTimeMillis() - message.getIngestedAt()));
+            }
+            metrics.recordOutcome(sub.getId(), log.getAttemptNumber(), message.getIngestedAt(), log.getOutcome());
+            stats.record(log);
+            liveStatus.publish(log);
+            logged = logWriter.append(log);
         }
+        if (retryUnavailable != null) {
+            RetryUnavailableException requeue = retryUnavailable;
+            return logged.thenApply(ignored -> {
+                throw requeue;
+            });
+        }
+        boolean retrying = "FAILED_ATTEMPT".equals(log.getOutcome());
+        return logged.thenApply(ignored -> retrying);
     }
 
-    private void handleFailure(WebhookMessage message, WebhookDeliveryLog log) {
-        if (message.getAttempt() < maxRetries) {
+    private void parkForOpenCircuit(WebhookMessage message, Subscription sub, String host) {
+        long openMs = endpointHealth.remainingOpenMs(host);
+        // Spread parked messages past the reopening instead of releasing them all at once
+        long delayMs = openMs + retryScheduler.backoffMs(sub, 2, null);
+        logger.info("Circuit open for {} ({} ms left), parking task {} for {} ms", host, openMs,
+                message.getDeliveryTaskId(), delayMs);
+        metrics.recordParked(host);
+        retryScheduler.schedule(message, delayMs);
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static String hostOf(String targetUrl) {
+        try {
+            String host = URI.create(targetUrl).getHost();
+            return host != null ? host.toLowerCase() : targetUrl;
+        } catch (IllegalArgumentException e) {
+            return targetUrl;
+        }
+    }
+
+    /**
+     * @return {@code null}, or the reason the message has to go back to the queue because its
+     *         retry could not be stored
+     */
+    private RetryUnavailableException handleFailure(WebhookMessage message, Subscription sub, WebhookDeliveryLog log, Long retryAfterMs) {
+        if (message.getAttempt() < retryScheduler.maxAttempts(sub)) {
             log.setOutcome("FAILED_ATTEMPT");
-            requeueWithBackoff(message);
-        } else {
-            log.setOutcome("FAILURE");
-            logger.error("Final delivery failure for task {}: max retries reached.", message.getDeliveryTaskId());
+            return requeueWithBackoff(message, sub, retryAfterMs);
         }
+        log.setOutcome("FAILURE");
+        logger.error("Final delivery failure for task {}: max retries reached.", message.getDeliveryTaskId());
+        return null;
     }
 
-    private void requeueWithBackoff(WebhookMessage message) {
+    private RetryUnavailableException requeueWithBackoff(WebhookMessage message, Subscription sub, Long retryAfterMs) {
         message.setAttempt(message.getAttempt() + 1);
-        String nextRetryQueue = getNextRetryQueue(message.getAttempt());
-        if(nextRetryQueue != null){
-            logger.info("Requeuing task {} for attempt {} to queue {}", message.getDeliveryTaskId(), message.getAttempt(), nextRetryQueue);
-            rabbitTemplate.convertAndSend(RabbitMQConfig.DLX_EXCHANGE, nextRetryQueue, message);
-        } else {
-            // Fallback if attempt number is out of defined queues
-            logger.error("Cannot requeue task {}, max defined retry queues exceeded.", message.getDeliveryTaskId());
-        }
-    }
-
-    private String getNextRetryQueue(int attempt) {
-        switch (attempt) {
-            case 2:
-                return RabbitMQConfig.QUEUE_RETRY_10S;
-            case 3:
-                return RabbitMQConfig.QUEUE_RETRY_30S;
-            case 4:
-                return RabbitMQConfig.QUEUE_RETRY_1M;
-            case 5:
-                return RabbitMQConfig.QUEUE_RETRY_5M;
-            case 6:
-                return RabbitMQConfig.QUEUE_RETRY_15M;
-            default:
+        long delayMs = retryScheduler.backoffMs(sub, message.getAttempt(), retryAfterMs);
+        logger.info("Scheduling task {} for attempt {} in {} ms", message.getDeliveryTaskId(), message.getAttempt(), delayMs);
+        try {
+            retryScheduler.schedule(message, delayMs);
+            return null;
+        } catch (RuntimeException e) {
+            // The broker hands the original back, still carrying this attempt's number
+            message.setAttempt(message.getAttempt() - 1);
+            logger.error("Retry of task {} could not be stored, returning it to the queue: {}", message.getDeliveryTaskId(), e.getMessage());
+            return new RetryUnavailableException(message, e);
+        }
+    }
+
+    /**
+     * A retry that neither Redis nor the broker retry queue would take; the message is
+     * returned to its queue instead so it is not lost.
+     */
+    private static final class RetryUnavailableException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        RetryUnavailableException(WebhookMessage message, Throwable cause) {
+            super("Retry of task " + message.getDeliveryTaskId() + " could not be stored", cause);
+        }
+    }
+
+    /**
+     * Reads a {@code Retry-After} header given either as seconds or as an HTTP date.
+     */
+    private static Long retryAfterMs(HttpHeaders headers) {
+        String value = headers != null ? headers.getFirst(HttpHeaders.RETRY_AFTER) : null;
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                long until = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return Math.max(0, until - System.currentTimeMillis());
+            } catch (DateTimeParseException ignored) {
                 return null;
+            }
         }
     }
 }
@@ -1,22 +1,36 @@
 package com.example.webhook_delivery.service;
 
 import com.example.webhook_delivery.rabbitmq.WebhookMessage;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.example.webhook_delivery.dto.BatchIngestResultDto;
+import com.example.webhook_delivery.dto.BatchWebhookItemDto;
 import com.example.webhook_delivery.dto.WebhookEvent;
-import com.example.webhook_delivery.dto.WebhookPayloadDto;
 import com.example.webhook_delivery.entity.Subscription;
-import com.example.webhook_delivery.repository.SubscriptionRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @RequiredArgsConstructor
@@ -24,51 +38,338 @@ import java.util.UUID;
 public class WebhookIngestionService {
 
     private static final Logger logger = LoggerFactory.getLogger(WebhookIngestionService.class);
-    private final SubscriptionRepository subscriptionRepo;
-    private final RabbitTemplate rabbitTemplate;
+    public static final String DELIVERY_ID_HEADER = "X-Delivery-Id";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final byte[] NULL_PAYLOAD = "null".getBytes(StandardCharsets.US_ASCII);
+
+    // Tag values of hookhub.ingest.events
+    private static final String SINGLE = "single";
+    private static final String BATCH = "batch";
+    private static final String FAN_OUT = "fanout";
+    private static final String ACCEPTED = "accepted";
+    private static final String REJECTED = "rejected";
+    private static final String DUPLICATE = "duplicate";
+    private static final String FAILED = "failed";
+
+    private final SubscriptionCache subscriptionCache;
+    private final DeliveryPublisher deliveryPublisher;
+    private final SubscriptionRoutingIndex routingIndex;
     private final ObjectMapper objectMapper;
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectProvider<DeliveryOutbox> outbox; // Only present with app.outbox.enabled
+    private final MeterRegistry meterRegistry;
 
-    @Value("${app.rabbitmq.exchange}")
-    private String exchangeName;
+    @Value("${app.ingest.max-batch-size}")
+    private int maxBatchSize;
 
-    @Value("${app.rabbitmq.routingkey}")
-    private String routingKey;
+    @Value("${app.outbox.enabled}")
+    private boolean outboxEnabled;
 
-    public ResponseEntity<String> ingest(UUID subscriptionId, WebhookPayloadDto webhookPayload) {
-        Optional<Subscription> subscriptionOptional = subscriptionRepo.findById(subscriptionId);
-        if (subscriptionOptional.isEmpty()) {
+    /**
+     * Queues one event. With an idempotency key, a repeat of an earlier request returns that
+     * request's delivery ID instead of queueing again.
+     */
+    public ResponseEntity<String> ingest(UUID subscriptionId, byte[] body, String idempotencyKey, String traceparent) {
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            countEvents(SINGLE, REJECTED, 1);
+            return ResponseEntity.badRequest().body("Invalid Idempotency-Key.");
+        }
+        if (subscriptionCache.get(subscriptionId) == null) {
             logger.warn("Received webhook for non-existent subscription ID: {}", subscriptionId);
+            countEvents(SINGLE, REJECTED, 1);
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body("Subscription ID not found.");
         }
 
-        String payloadString;
+        RawPayload raw;
         try {
-            payloadString = objectMapper.writeValueAsString(webhookPayload.getPayload());
-        } catch (JsonProcessingException e) {
-            logger.error("Failed to serialize payload: {}", e.getMessage());
+            raw = readPayload(objectMapper.getFactory(), body);
+        } catch (IOException e) {
+            logger.error("Failed to parse payload: {}", e.getMessage());
+            countEvents(SINGLE, REJECTED, 1);
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body("Invalid payload format.");
         }
 
-        WebhookEvent event = new WebhookEvent(UUID.randomUUID(), subscriptionId, payloadString);
+        WebhookEvent event = new WebhookEvent(UUID.randomUUID(), subscriptionId, raw.payload());
 
-        WebhookMessage message = new WebhookMessage();
-        message.setDeliveryTaskId(event.getDeliveryId());
-        message.setSubscriptionId(subscriptionId);  // Set the target subscription
-        message.setEventType(webhookPayload.getEventType());
-        message.setPayload(payloadString);
-        message.setAttempt(1);
+        if (idempotencyKey != null) {
+            UUID original;
+            try {
+                original = idempotencyStore.claim(subscriptionId, idempotencyKey, event.getDeliveryId());
+            } catch (Exception e) {
+                logger.error("Idempotency check failed for subscription {}: {}", subscriptionId, e.getMessage());
+                countEvents(SINGLE, FAILED, 1);
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body("Failed to check Idempotency-Key.");
+            }
+            if (original != null) {
+                logger.info("Duplicate webhook for subscription {}, original delivery ID: {}", subscriptionId, original);
+                countEvents(SINGLE, DUPLICATE, 1);
+                return ResponseEntity.ok().header(DELIVERY_ID_HEADER, original.toString())
+                        .body("Webhook Already Accepted");
+            }
+        }
 
-        try {
-            rabbitTemplate.convertAndSend(exchangeName, routingKey, message);
-            logger.info("Queued webhook for subscription {}. Delivery ID: {}", event.getSubscriptionId(), event.getDeliveryId());
-        } catch (Exception e) {
-            logger.error("Failed to queue webhook for subscription {}: {}", subscriptionId, e.getMessage());
+        WebhookMessage message = newMessage(event.getDeliveryId(), subscriptionId, raw.eventType(), raw.payload(), traceparent);
+
+        if (!enqueue(message)) {
+            if (idempotencyKey != null) {
+                idempotencyStore.release(subscriptionId, idempotencyKey, event.getDeliveryId());
+            }
+            countEvents(SINGLE, FAILED, 1);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to queue webhook.");
         }
+        logger.info("Queued webhook for subscription {}. Delivery ID: {}", event.getSubscriptionId(), event.getDeliveryId());
+        countEvents(SINGLE, ACCEPTED, 1);
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).header(DELIVERY_ID_HEADER, event.getDeliveryId().toString())
+                .body("Webhook Accepted");
+    }
+
+    /**
+     * Accepts many events in one call. Subscriptions are resolved with a single query and the
+     * resulting messages are published together and confirmed by the broker, or committed to
+     * the outbox, before returning.
+     */
+    public ResponseEntity<List<BatchIngestResultDto>> ingestBatch(List<BatchWebhookItemDto> items, String traceparent) {
+        if (items == null || items.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (items.size() > maxBatchSize) {
+            logger.warn("Rejected batch of {} events, limit is {}", items.size(), maxBatchSize);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+
+        Set<UUID> subscriptionIds = new HashSet<>();
+        for (BatchWebhookItemDto item : items) {
+            if (item != null && item.getSubscriptionId() != null) {
+                subscriptionIds.add(item.getSubscriptionId());
+            }
+        }
+        Map<UUID, Subscription> subscriptions = subscriptionCache.getAll(subscriptionIds);
+
+        BatchIngestResultDto[] results = new BatchIngestResultDto[items.size()];
+        List<WebhookMessage> messages = new ArrayList<>();
+        List<Integer> messageIndexes = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            BatchWebhookItemDto item = items.get(i);
+            if (item == null) {
+                results[i] = BatchIngestResultDto.rejected(i, null, "Unparseable event.");
+                continue;
+            }
+            if (item.getSubscriptionId() == null || !subscriptions.containsKey(item.getSubscriptionId())) {
+                results[i] = BatchIngestResultDto.rejected(i, item.getSubscriptionId(), "Subscription ID not found.");
+                continue;
+            }
+            byte[] payload;
+            try {
+                payload = objectMapper.writeValueAsBytes(item.getPayload());
+            } catch (JsonProcessingException e) {
+                results[i] = BatchIngestResultDto.rejected(i, item.getSubscriptionId(), "Invalid payload format.");
+                continue;
+            }
+            messages.add(newMessage(UUID.randomUUID(), item.getSubscriptionId(), item.getEventType(), payload, traceparent));
+            messageIndexes.add(i);
+        }
+
+        if (!messages.isEmpty()) {
+            List<Boolean> confirmed = enqueue(messages);
+            for (int m = 0; m < messages.size(); m++) {
+                int i = messageIndexes.get(m);
+                WebhookMessage message = messages.get(m);
+                results[i] = confirmed.get(m)
+                        ? BatchIngestResultDto.accepted(i, message.getSubscriptionId(), message.getDeliveryTaskId())
+                        : BatchIngestResultDto.rejected(i, message.getSubscriptionId(), "Failed to queue webhook.");
+            }
+        }
+
+        logger.info("Batch ingest: {} events, {} queued", items.size(), messages.size());
+        countResults(BATCH, List.of(results));
+        return new ResponseEntity<>(List.of(results), HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Delivers one event to every subscription whose event type matches, as resolved
+     * by the local routing index. The request body is the payload and is forwarded as is.
+     */
+    public ResponseEntity<List<BatchIngestResultDto>> fanOut(String eventType, byte[] payload, String traceparent) {
+        List<Subscription> subscriptions = routingIndex.lookup(eventType);
+        if (subscriptions.isEmpty()) {
+            logger.info("No subscriptions for event type {}", eventType);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        try {
+            validateJson(payload);
+        } catch (IOException e) {
+            logger.error("Failed to parse payload: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
 
-        return new ResponseEntity<>("Webhook Accepted", HttpStatus.ACCEPTED);
+        // Every message shares the same payload array; nothing downstream mutates it
+        List<WebhookMessage> messages = new ArrayList<>(subscriptions.size());
+        for (Subscription subscription : subscriptions) {
+            messages.add(newMessage(UUID.randomUUID(), subscription.getId(), eventType, payload, traceparent));
+        }
+        List<Boolean> confirmed = enqueue(messages);
+
+        List<BatchIngestResultDto> results = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            WebhookMessage message = messages.get(i);
+            results.add(confirmed.get(i)
+                    ? BatchIngestResultDto.accepted(i, message.getSubscriptionId(), message.getDeliveryTaskId())
+                    : BatchIngestResultDto.rejected(i, message.getSubscriptionId(), "Failed to queue webhook."));
+        }
+        logger.info("Fanned out event {} to {} subscriptions", eventType, messages.size());
+        countResults(FAN_OUT, results);
+        return new ResponseEntity<>(results, HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Parses a newline-delimited JSON body. Lines that fail to parse are kept as {@code null}
+     * so they are reported as rejected at their original index.
+     */
+    public List<BatchWebhookItemDto> parseNdjson(String body) {
+        List<BatchWebhookItemDto> items = new ArrayList<>();
+        if (body == null) {
+            return items;
+        }
+        for (String line : body.split("\\r?\\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                items.add(objectMapper.readValue(line, BatchWebhookItemDto.class));
+            } catch (JsonProcessingException e) {
+                items.add(null);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Pulls {@code eventType} and the raw bytes of {@code payload} out of an ingest body
+     * {@code {"eventType": ..., "payload": ...}} with the streaming parser, without building
+     * an object tree or re-serializing the payload.
+     */
+    static RawPayload readPayload(JsonFactory jsonFactory, byte[] body) throws IOException {
+        String eventType = null;
+        byte[] payload = null;
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("payload".equals(field)) {
+                    int start = (int) parser.currentTokenLocation().getByteOffset();
+                    parser.skipChildren();
+                    parser.finishToken();
+                    int end = (int) parser.currentLocation().getByteOffset();
+                    payload = value == JsonToken.VALUE_NULL ? null : Arrays.copyOfRange(body, start, end);
+                } else if ("eventType".equals(field)) {
+                    eventType = value == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT || parser.nextToken() != null) {
+                throw new JsonParseException(parser, "Unexpected content after the JSON object");
+            }
+        }
+        // Same as the old Object binding, which serialized a missing payload as null
+        return new RawPayload(eventType, payload != null ? payload : NULL_PAYLOAD);
+    }
+
+    private void validateJson(byte[] body) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() == null) {
+                throw new JsonParseException(parser, "Empty body");
+            }
+            parser.skipChildren();
+            if (parser.nextToken() != null) {
+                throw new JsonParseException(parser, "Unexpected content after the JSON value");
+            }
+        }
+    }
+
+    record RawPayload(String eventType, byte[] payload) {
+    }
+
+    /**
+     * Hands one message to the outbox when it is enabled, otherwise publishes it.
+     */
+    private boolean enqueue(WebhookMessage message) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean queued;
+        try {
+            if (outboxEnabled) {
+                queued = outbox.getObject().append(List.of(message)).get(0);
+            } else {
+                deliveryPublisher.publish(message);
+                queued = true;
+            }
+        } catch (Exception e) {
+            logger.error("Failed to queue webhook for subscription {}: {}", message.getSubscriptionId(), e.getMessage());
+            queued = false;
+        }
+        sample.stop(enqueueTimer(queued));
+        return queued;
+    }
+
+    /**
+     * Hands messages to the outbox when it is enabled, otherwise publishes them with confirms.
+     */
+    private List<Boolean> enqueue(List<WebhookMessage> messages) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<Boolean> queued = outboxEnabled ? outbox.getObject().append(messages) : deliveryPublisher.publishConfirmed(messages);
+        sample.stop(enqueueTimer(!queued.contains(false)));
+        return queued;
+    }
+
+    private Timer enqueueTimer(boolean queued) {
+        return Timer.builder("hookhub.ingest.enqueue")
+                .description("Time to publish accepted events, or commit them to the outbox")
+                .tag("mode", outboxEnabled ? "outbox" : "direct")
+                .tag("result", queued ? "ok" : "failed")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void countEvents(String endpoint, String result, int count) {
+        if (count > 0) {
+            Counter.builder("hookhub.ingest.events")
+                    .tag("endpoint", endpoint)
+                    .tag("result", result)
+                    .register(meterRegistry)
+                    .increment(count);
+        }
+    }
+
+    private void countResults(String endpoint, List<BatchIngestResultDto> results) {
+        int accepted = 0;
+        for (BatchIngestResultDto result : results) {
+            if (result.isAccepted()) {
+                accepted++;
+            }
+        }
+        countEvents(endpoint, ACCEPTED, accepted);
+        countEvents(endpoint, REJECTED, results.size() - accepted);
+    }
+
+    private WebhookMessage newMessage(UUID deliveryTaskId, UUID subscriptionId, String eventType, byte[] payload, String traceparent) {
+        WebhookMessage message = new WebhookMessage();
+        message.setDeliveryTaskId(deliveryTaskId);
+        message.setSubscriptionId(subscriptionId);  // Set the target subscription
+        message.setEventType(eventType);
+        message.setPayload(payload);
+        message.setAttempt(1);
+        message.setIngestedAt(System.currentTimeMillis());
+        // Events of one request share its trace, continued from the caller's if it sent one
+        message.setTraceparent(TraceContext.continueOrStart(traceparent));
+        return message;
     }
 }
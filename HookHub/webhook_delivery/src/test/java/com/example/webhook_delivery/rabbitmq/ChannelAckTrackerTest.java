@@ -0,0 +1,120 @@
+package com.example.webhook_delivery.rabbitmq;
+
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class ChannelAckTrackerTest {
+
+    private Channel channel;
+    private ChannelAckTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        channel = mock(Channel.class);
+        tracker = new ChannelAckTracker(channel, 3);
+    }
+
+    private void register(long first, long last) {
+        for (long tag = first; tag <= last; tag++) {
+            tracker.register(tag);
+        }
+    }
+
+    @Test
+    void acksCompletedPrefixWithOneMultipleAck() throws Exception {
+        register(1, 5);
+        tracker.ack(1);
+        tracker.ack(2);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+
+        tracker.ack(3);
+
+        verify(channel).basicAck(3, true);
+        verifyNoMoreInteractions(channel);
+    }
+
+    @Test
+    void acksDeliveriesCompletedBehindSlowOneIndividually() throws Exception {
+        register(1, 5);
+        tracker.ack(2);
+        tracker.ack(3);
+        tracker.ack(4);
+
+        verify(channel).basicAck(2, false);
+        verify(channel).basicAck(3, false);
+        verify(channel).basicAck(4, false);
+        verifyNoMoreInteractions(channel);
+    }
+
+    @Test
+    void flushesEverythingOnceNothingIsInProgress() throws Exception {
+        register(1, 2);
+        tracker.ack(2);
+        tracker.ack(1);
+
+        verify(channel).basicAck(2, true);
+        verifyNoMoreInteractions(channel);
+    }
+
+    @Test
+    void multipleAckSkipsPastRejectedAndIndividuallyAckedTags() throws Exception {
+        register(1, 8);
+        tracker.ack(2);
+        tracker.reject(3, true);
+        tracker.ack(4);
+        tracker.ack(5);
+        // 1 is still outstanding, so 2, 4 and 5 went out one by one
+        tracker.ack(1);
+        tracker.ack(6);
+        tracker.ack(7);
+        tracker.ack(8);
+
+        InOrder order = inOrder(channel);
+        order.verify(channel).basicNack(3, false, true);
+        order.verify(channel).basicAck(2, false);
+        order.verify(channel).basicAck(4, false);
+        order.verify(channel).basicAck(5, false);
+        order.verify(channel).basicAck(7, true);
+        order.verify(channel).basicAck(8, true);
+        verifyNoMoreInteractions(channel);
+    }
+
+    @Test
+    void neverMultipleAcksOverUnregisteredTags() throws Exception {
+        register(1, 2);
+        // 3 and 4 went to a listener that never registered them
+        register(5, 6);
+        tracker.ack(1);
+        tracker.ack(2);
+        tracker.ack(5);
+        tracker.ack(6);
+
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(2, false);
+        verify(channel).basicAck(5, false);
+        verify(channel).basicAck(6, false);
+        verifyNoMoreInteractions(channel);
+    }
+
+    @Test
+    void ignoresSettlingUnknownOrAlreadySettledTags() throws Exception {
+        register(1, 1);
+        tracker.ack(1);
+        tracker.ack(1);
+        tracker.reject(1, false);
+        tracker.ack(7);
+
+        verify(channel).basicAck(1, true);
+        verifyNoMoreInteractions(channel);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.webhook_delivery.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeliveryShardsTest {
+
+    private static List<UUID> subscriptions(int count) {
+        Random random = new Random(42);
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        return ids;
+    }
+
+    @Test
+    void shardOfIsStableAndInRange() {
+        for (UUID id : subscriptions(1000)) {
+            int shard = DeliveryShards.shardOf(id, 16);
+            assertThat(shard).isBetween(0, 15).isEqualTo(DeliveryShards.shardOf(id, 16));
+        }
+        assertThat(DeliveryShards.shardOf(UUID.randomUUID(), 1)).isZero();
+    }
+
+    @Test
+    void shardOfSpreadsSubscriptionsEvenly() {
+        int[] counts = new int[8];
+        for (UUID id : subscriptions(80_000)) {
+            counts[DeliveryShards.shardOf(id, 8)]++;
+        }
+        for (int count : counts) {
+            assertThat(count).isBetween(9_000, 11_000);
+        }
+    }
+
+    @Test
+    void addingShardOnlyMovesSubscriptionsToTheNewShard() {
+        int moved = 0;
+        List<UUID> ids = subscriptions(10_000);
+        for (UUID id : ids) {
+            int before = DeliveryShards.shardOf(id, 8);
+            int after = DeliveryShards.shardOf(id, 9);
+            if (before != after) {
+                assertThat(after).isEqualTo(8);
+                moved++;
+            }
+        }
+        // About 1/9 of them
+        assertThat(moved).isBetween(900, 1_350);
+    }
+
+    @Test
+    void ownerOfNoNodesIsNull() {
+        assertThat(DeliveryShards.ownerOf(0, List.of())).isNull();
+    }
+
+    @Test
+    void ownerOfDoesNotDependOnNodeOrder() {
+        List<String> nodes = new ArrayList<>(List.of("node-a", "node-b", "node-c", "node-d"));
+        Map<Integer, String> owners = new HashMap<>();
+        for (int shard = 0; shard < 32; shard++) {
+            owners.put(shard, DeliveryShards.ownerOf(shard, nodes));
+        }
+        Collections.reverse(nodes);
+        for (int shard = 0; shard < 32; shard++) {
+            assertThat(DeliveryShards.ownerOf(shard, nodes)).isEqualTo(owners.get(shard));
+        }
+    }
+
+    @Test
+    void nodeLeavingOnlyMovesItsOwnShards() {
+        List<String> nodes = List.of("node-a", "node-b", "node-c", "node-d");
+        List<String> remaining = List.of("node-a", "node-b", "node-d");
+        for (int shard = 0; shard < 64; shard++) {
+            String before = DeliveryShards.ownerOf(shard, nodes);
+            String after = DeliveryShards.ownerOf(shard, remaining);
+            if (!before.equals("node-c")) {
+                assertThat(after).isEqualTo(before);
+            } else {
+                assertThat(remaining).contains(after);
+            }
+        }
+    }
+
+    @Test
+    void nodeJoiningOnlyTakesShardsForItself() {
+        List<String> nodes = List.of("node-a", "node-b", "node-c");
+        List<String> grown = List.of("node-a", "node-b", "node-c", "node-d");
+        int taken = 0;
+        for (int shard = 0; shard < 64; shard++) {
+            String after = DeliveryShards.ownerOf(shard, grown);
+            if (!after.equals(DeliveryShards.ownerOf(shard, nodes))) {
+                assertThat(after).isEqualTo("node-d");
+                taken++;
+            }
+        }
+        assertThat(taken).isPositive();
+    }
+}
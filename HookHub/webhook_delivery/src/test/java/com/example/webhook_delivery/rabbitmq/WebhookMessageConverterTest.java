@@ -0,0 +1,81 @@
+package com.example.webhook_delivery.rabbitmq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebhookMessageConverterTest {
+
+    private static final String PAYLOAD = "{\"order\":\"café \\\"42\\\"\",\"items\":[1,2,3]}";
+
+    private static WebhookMessage message() {
+        return new WebhookMessage(UUID.randomUUID(), UUID.randomUUID(), "order.created",
+                PAYLOAD.getBytes(StandardCharsets.UTF_8), 3, null, 1_000L, 2_000L, 3_000L,
+                "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+    }
+
+    @Test
+    void roundTripsThroughHeadersAndRawBody() {
+        WebhookMessageConverter converter = new WebhookMessageConverter();
+        WebhookMessage original = message();
+
+        Message amqp = converter.toMessage(original, new MessageProperties());
+
+        assertThat(amqp.getBody()).isEqualTo(original.getPayload());
+        assertThat(amqp.getMessageProperties().getContentEncoding()).isNull();
+        assertThat(converter.fromMessage(amqp)).isEqualTo(original);
+    }
+
+    @Test
+    void compressesBodiesFromTheThreshold() {
+        WebhookMessageConverter converter = new WebhookMessageConverter(16);
+        WebhookMessage original = message();
+
+        Message amqp = converter.toMessage(original, new MessageProperties());
+
+        assertThat(amqp.getMessageProperties().getContentEncoding()).isEqualTo(PayloadCompression.GZIP);
+        assertThat(amqp.getBody()).isNotEqualTo(original.getPayload());
+        assertThat(converter.fromMessage(amqp)).isEqualTo(original);
+    }
+
+    @Test
+    void offloadedPayloadTravelsAsReference() {
+        WebhookMessageConverter converter = new WebhookMessageConverter();
+        WebhookMessage original = message();
+        original.setPayload(null);
+        original.setPayloadRef("hookhub:payload:abc");
+
+        Message amqp = converter.toMessage(original, new MessageProperties());
+
+        assertThat(amqp.getBody()).isEmpty();
+        assertThat(converter.fromMessage(amqp)).isEqualTo(original);
+    }
+
+    @Test
+    void readsMessagesInTheOldJsonEnvelope() throws Exception {
+        WebhookMessage original = message();
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setHeader("__TypeId__", WebhookMessage.class.getName());
+        Message amqp = new Message(new ObjectMapper().writeValueAsBytes(original), properties);
+
+        assertThat(new WebhookMessageConverter().fromMessage(amqp)).isEqualTo(original);
+    }
+
+    @Test
+    void jsonKeepsThePayloadAsTextWithBytesOrStrings() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        WebhookMessage original = message();
+
+        String json = objectMapper.writeValueAsString(original);
+        assertThat(json).contains("\"payload\":" + objectMapper.writeValueAsString(PAYLOAD));
+        assertThat(objectMapper.readValue(json, WebhookMessage.class)).isEqualTo(original);
+        assertThat(objectMapper.readValue(objectMapper.writeValueAsBytes(original), WebhookMessage.class)).isEqualTo(original);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.webhook_delivery.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    @Test
+    void hasNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("key-" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain("key-" + i)).isTrue();
+        }
+        assertThat(filter.insertions()).isEqualTo(10_000);
+    }
+
+    @Test
+    void keepsFalsePositivesNearTheConfiguredRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("key-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+    }
+
+    @Test
+    void isSizedFromExpectedInsertionsAndRate() {
+        // About 9.6 bits per key at 1%
+        assertThat(new BloomFilter(1_000_000, 0.01).sizeInBytes()).isBetween(1_150_000L, 1_250_000L);
+        assertThat(new BloomFilter(1_000_000, 0.001).sizeInBytes())
+                .isGreaterThan(new BloomFilter(1_000_000, 0.01).sizeInBytes());
+        assertThat(new BloomFilter(0, 0.01).mightContain("anything")).isFalse();
+    }
+}
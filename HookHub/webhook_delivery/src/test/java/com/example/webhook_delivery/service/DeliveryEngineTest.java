@@ -0,0 +1,126 @@
+package com.example.webhook_delivery.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DeliveryEngineTest {
+
+    private static final String STALLED = "stalled.example.com";
+    private static final String HEALTHY = "healthy.example.com";
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private DeliveryEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        EndpointHealthRegistry endpointHealth = mock(EndpointHealthRegistry.class);
+        // As after the breaker opened: one delivery at a time per host
+        when(endpointHealth.concurrencyLimit(anyString())).thenReturn(1);
+        engine = new DeliveryEngine(2, 5, endpointHealth);
+        engine.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        engine.stop();
+    }
+
+    private Runnable stalled() {
+        return () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    @Test
+    void deliveriesQueuedBehindAStalledHostDoNotHoldBackOtherHosts() throws Exception {
+        List<CompletableFuture<Void>> stalledDone = new ArrayList<>();
+        // More than the global limit, all behind the one slot the stalled host has
+        CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 10; i++) {
+                stalledDone.add(engine.submit(STALLED, stalled()));
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        AtomicInteger healthyRuns = new AtomicInteger();
+        CompletableFuture<Void> healthyDone = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 10; i++) {
+                engine.submit(HEALTHY, healthyRuns::incrementAndGet).join();
+            }
+        });
+
+        healthyDone.get(5, TimeUnit.SECONDS);
+        assertThat(healthyRuns).hasValue(10);
+        assertThat(stalledDone).filteredOn(CompletableFuture::isDone).isEmpty();
+
+        release.countDown();
+        CompletableFuture.allOf(stalledDone.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void globalLimitStillCapsDeliveriesAcrossHosts() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        CompletableFuture<Void> submitted = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 6; i++) {
+                done.add(engine.submit("host-" + i + ".example.com", () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    started.countDown();
+                    stalled().run();
+                    running.decrementAndGet();
+                }));
+            }
+        });
+
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(100);
+        // The third host's delivery waits in submit for a global permit
+        assertThat(submitted).isNotDone();
+        assertThat(running).hasValue(2);
+
+        release.countDown();
+        submitted.get(5, TimeUnit.SECONDS);
+        CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        assertThat(maxRunning).hasValue(2);
+    }
+
+    @Test
+    void queuedDeliveriesRunInOrderOnceTheHostFreesUp() throws Exception {
+        List<Integer> order = new ArrayList<>();
+        CompletableFuture<Void> first = engine.submit(HEALTHY, stalled());
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int n = i;
+            done.add(engine.submit(HEALTHY, () -> {
+                synchronized (order) {
+                    order.add(n);
+                }
+            }));
+        }
+        assertThat(done).filteredOn(CompletableFuture::isDone).isEmpty();
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        assertThat(order).containsExactly(0, 1, 2, 3, 4);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.entity.WebhookDeliveryLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DeliveryLogWriterTest {
+
+    private final List<List<Long>> batches = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final AtomicLong nextBlock = new AtomicLong(1);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private JdbcTemplate jdbcTemplate;
+    private DeliveryLogWriter writer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(Object[].class))).thenAnswer(invocation -> {
+            int blocks = invocation.getArgument(2);
+            List<Long> lows = new ArrayList<>();
+            for (int i = 0; i < blocks; i++) {
+                lows.add(nextBlock.getAndAdd(DeliveryLogWriter.ID_BLOCK_SIZE));
+            }
+            return lows;
+        });
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    if (failuresLeft.getAndDecrement() > 0) {
+                        throw new DataAccessResourceFailureException("down");
+                    }
+                    List<Long> ids = new ArrayList<>();
+                    for (WebhookDeliveryLog log : invocation.<Collection<WebhookDeliveryLog>>getArgument(1)) {
+                        ids.add(log.getId());
+                    }
+                    batches.add(ids);
+                    return new int[0][];
+                });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writer.isRunning()) {
+            writer.stop();
+        }
+    }
+
+    private DeliveryLogWriter writer(int batchSize, long flushIntervalMs, int maxFlushAttempts) {
+        return new DeliveryLogWriter(jdbcTemplate, mock(PlatformTransactionManager.class), meterRegistry,
+                100, batchSize, flushIntervalMs, maxFlushAttempts);
+    }
+
+    private static WebhookDeliveryLog log() {
+        WebhookDeliveryLog log = new WebhookDeliveryLog(UUID.randomUUID(), UUID.randomUUID(), "https://hooks.example.com", 1);
+        log.setOutcome("SUCCESS");
+        return log;
+    }
+
+    private List<CompletableFuture<Void>> append(int count) {
+        List<CompletableFuture<Void>> written = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            written.add(writer.append(log()));
+        }
+        return written;
+    }
+
+    private static void awaitAll(List<CompletableFuture<Void>> written) throws Exception {
+        CompletableFuture.allOf(written.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void writesFullBatchesThenTheRemainderWithDistinctIds() throws Exception {
+        writer = writer(10, 200, 3);
+        List<CompletableFuture<Void>> written = append(25);
+        writer.start();
+
+        awaitAll(written);
+
+        assertThat(batches).extracting(List::size).containsExactly(10, 10, 5);
+        Set<Long> ids = new HashSet<>();
+        batches.forEach(ids::addAll);
+        assertThat(ids).hasSize(25).doesNotContainNull();
+    }
+
+    @Test
+    void flushesAPartialBatchOnceTheIntervalHasPassed() throws Exception {
+        writer = writer(100, 50, 3);
+        writer.start();
+
+        long start = System.nanoTime();
+        awaitAll(append(3));
+
+        assertThat(batches).extracting(List::size).containsExactly(3);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2_000);
+    }
+
+    @Test
+    void failedFlushIsRetriedWithTheSameIds() throws Exception {
+        writer = writer(10, 50, 3);
+        failuresLeft.set(1);
+        writer.start();
+
+        awaitAll(append(4));
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(nextBlock.get()).isEqualTo(1 + DeliveryLogWriter.ID_BLOCK_SIZE);
+    }
+
+    @Test
+    void rowsAreReleasedAndCountedAfterTheLastFailedFlush() throws Exception {
+        writer = writer(10, 50, 2);
+        failuresLeft.set(2);
+        writer.start();
+
+        awaitAll(append(3));
+
+        assertThat(batches).isEmpty();
+        assertThat(meterRegistry.counter("hookhub.delivery.log.dropped").count()).isEqualTo(3.0);
+    }
+
+    @Test
+    void stopDrainsBufferedRows() throws Exception {
+        writer = writer(10, 60_000, 3);
+        writer.start();
+        List<CompletableFuture<Void>> written = append(15);
+
+        writer.stop();
+
+        awaitAll(written);
+        assertThat(batches.stream().mapToInt(List::size).sum()).isEqualTo(15);
+    }
+}
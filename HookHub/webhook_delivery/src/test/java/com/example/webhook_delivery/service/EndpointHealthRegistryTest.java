@@ -0,0 +1,168 @@
+package com.example.webhook_delivery.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EndpointHealthRegistryTest {
+
+    private static final String HOST = "hooks.example.com";
+
+    private static EndpointHealthRegistry registry(long openDurationMs, long probeTimeoutMs) {
+        return registry(openDurationMs, probeTimeoutMs, 600_000);
+    }
+
+    private static EndpointHealthRegistry registry(long openDurationMs, long probeTimeoutMs, long idleEvictionMs) {
+        // Limit 1..16, window of 10 calls, opens from 5 calls at a 50% failure rate, 2 probes
+        return new EndpointHealthRegistry(16, 1, 0.5, 3.0, 10, 5, 50, openDurationMs, 2, probeTimeoutMs, idleEvictionMs);
+    }
+
+    private static void trip(EndpointHealthRegistry registry) {
+        for (int i = 0; i < 5; i++) {
+            assertThat(registry.tryAcquirePermission(HOST)).isTrue();
+            registry.recordFailure(HOST, 10);
+        }
+    }
+
+    private static Object state(EndpointHealthRegistry registry) {
+        return registry.snapshot().get(HOST).get("state");
+    }
+
+    @Test
+    void staysClosedBelowMinimumCallsOrFailureRate() {
+        EndpointHealthRegistry registry = registry(60_000, 60_000);
+        for (int i = 0; i < 4; i++) {
+            registry.recordFailure(HOST, 10);
+        }
+        assertThat(state(registry)).isEqualTo(EndpointHealthRegistry.State.CLOSED);
+
+        EndpointHealthRegistry mostlyHealthy = registry(60_000, 60_000);
+        for (int i = 0; i < 6; i++) {
+            mostlyHealthy.recordSuccess(HOST, 10);
+        }
+        for (int i = 0; i < 4; i++) {
+            mostlyHealthy.recordFailure(HOST, 10);
+        }
+        assertThat(state(mostlyHealthy)).isEqualTo(EndpointHealthRegistry.State.CLOSED);
+        assertThat(registry.tryAcquirePermission(HOST)).isTrue();
+    }
+
+    @Test
+    void opensAtFailureRateAndRejectsWhileOpen() {
+        EndpointHealthRegistry registry = registry(60_000, 60_000);
+        trip(registry);
+
+        assertThat(state(registry)).isEqualTo(EndpointHealthRegistry.State.OPEN);
+        assertThat(registry.tryAcquirePermission(HOST)).isFalse();
+        assertThat(registry.remainingOpenMs(HOST)).isBetween(1L, 60_000L);
+        assertThat(registry.concurrencyLimit(HOST)).isEqualTo(1);
+    }
+
+    @Test
+    void halfOpenLetsProbesThroughAndClosesWhenTheySucceed() {
+        EndpointHealthRegistry registry = registry(0, 60_000);
+        trip(registry);
+
+        assertThat(registry.tryAcquirePermission(HOST)).isTrue();
+        assertThat(registry.tryAcquirePermission(HOST)).isTrue();
+        assertThat(registry.tryAcquirePermission(HOST)).isFalse();
+        assertThat(state(registry)).isEqualTo(EndpointHealthRegistry.State.HALF_OPEN);
+
+        registry.recordSuccess(HOST, 10);
+        registry.recordSuccess(HOST, 10);
+
+        assertThat(state(registry)).isEqualTo(EndpointHealthRegistry.State.CLOSED);
+        assertThat(registry.tryAcquirePermission(HOST)).isTrue();
+    }
+
+    @Test
+    void failedProbeOpensAgain() {
+        EndpointHealthRegistry registry = registry(0, 60_000);
+        trip(registry);
+
+        assertThat(registry.tryAcquirePermission(HOST)).isTrue();
+        registry.recordFailure(HOST, 10);
+
+        assertThat(state(registry)).isEqualTo(EndpointHealthRegistry.State.OPEN);
+    }
+
+    @Test
+    void releasedProbeCanBeTakenAgain() {
+        EndpointHealthRegistry registry = registry(0, 60_000);
+        trip(registry);
+        assertThat(registry.tryAcquirePermission(HOST)).isTrue();
+        assertThat(registry.tryAcquirePermission(HOST)).isTrue();
+        assertThat(registry.tryAcquirePermission(HOST)).isFalse();
+
+        registry.releasePermission(HOST);
+
+        assertThat(registry.tryAcquirePermission(HOST)).isTrue();
+        assertThat(registry.tryAcquirePermission(HOST)).isFalse();
+    }
+
+    @Test
+    void overdueProbesOpenTheBreakerAgain() throws InterruptedException {
+        EndpointHealthRegistry registry = registry(50, 20);
+        trip(registry);
+        Thread.sleep(60);
+        assertThat(registry.tryAcquirePermission(HOST)).isTrue();
+        assertThat(registry.tryAcquirePermission(HOST)).isTrue();
+        assertThat(registry.remainingOpenMs(HOST)).isZero();
+
+        // Neither probe reports back
+        Thread.sleep(30);
+
+        assertThat(registry.remainingOpenMs(HOST)).isPositive();
+        assertThat(state(registry)).isEqualTo(EndpointHealthRegistry.State.OPEN);
+        assertThat(registry.tryAcquirePermission(HOST)).isFalse();
+    }
+
+    @Test
+    void concurrencyLimitBacksOffOnFailureAndGrowsBackWhenHealthy() {
+        EndpointHealthRegistry registry = registry(60_000, 60_000);
+        assertThat(registry.concurrencyLimit(HOST)).isEqualTo(16);
+
+        registry.recordSuccess(HOST, 10);
+        registry.recordFailure(HOST, 10);
+        assertThat(registry.concurrencyLimit(HOST)).isEqualTo(8);
+
+        for (int i = 0; i < 50; i++) {
+            registry.recordSuccess(HOST, 10);
+        }
+        assertThat(registry.concurrencyLimit(HOST)).isGreaterThan(8);
+    }
+
+    @Test
+    void latencyAboveToleranceCountsAsCongestion() {
+        EndpointHealthRegistry registry = registry(60_000, 60_000);
+        registry.recordSuccess(HOST, 10);
+        registry.recordSuccess(HOST, 10);
+        int before = registry.concurrencyLimit(HOST);
+
+        registry.recordSuccess(HOST, 100);
+
+        assertThat(registry.concurrencyLimit(HOST)).isLessThan(before);
+    }
+
+    @Test
+    void idleClosedHostsAreEvictedButOpenOnesKept() {
+        EndpointHealthRegistry registry = registry(60_000, 60_000, 0);
+        trip(registry);
+        registry.recordSuccess("other.example.com", 10);
+
+        registry.evictIdle();
+
+        assertThat(registry.snapshot()).containsOnlyKeys(HOST);
+        assertThat(registry.concurrencyLimit("other.example.com")).isEqualTo(16);
+    }
+
+    @Test
+    void recentlyUsedHostsAreKept() {
+        EndpointHealthRegistry registry = registry(60_000, 60_000, 60_000);
+        registry.recordSuccess("other.example.com", 10);
+
+        registry.evictIdle();
+
+        assertThat(registry.snapshot()).containsOnlyKeys("other.example.com");
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.entity.Subscription;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FairDeliverySchedulerTest {
+
+    private FairDeliveryScheduler scheduler;
+    private final List<String> dispatched = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new FairDeliveryScheduler(5);
+        scheduler.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler.isRunning()) {
+            scheduler.stop();
+        }
+    }
+
+    private static Subscription subscription(Integer maxRps, Integer maxConcurrency) {
+        Subscription subscription = new Subscription();
+        subscription.setId(UUID.randomUUID());
+        subscription.setMaxRps(maxRps);
+        subscription.setMaxConcurrency(maxConcurrency);
+        return subscription;
+    }
+
+    private CompletableFuture<Void> schedule(Subscription subscription, String name, int cost, CompletableFuture<Void> delivery) {
+        return scheduler.schedule(subscription, cost, () -> {
+            dispatched.add(name);
+            return delivery;
+        });
+    }
+
+    @Test
+    void burstFromOneSubscriptionDoesNotHoldAnotherBack() throws Exception {
+        Subscription noisy = subscription(null, null);
+        Subscription quiet = subscription(null, null);
+        CountDownLatch dispatcherBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Holds the dispatcher so the burst and the quiet job are queued together
+        scheduler.schedule(noisy, 1, () -> {
+            dispatcherBusy.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+        assertThat(dispatcherBusy.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 50; i++) {
+            schedule(noisy, "noisy", 1, CompletableFuture.completedFuture(null));
+        }
+        CompletableFuture<Void> quietDone = schedule(quiet, "quiet", 1, CompletableFuture.completedFuture(null));
+
+        release.countDown();
+        quietDone.get(5, TimeUnit.SECONDS);
+
+        // One quantum of the burst at most goes first
+        assertThat(dispatched.indexOf("quiet")).isLessThanOrEqualTo(5);
+    }
+
+    @Test
+    void costlyJobsWaitForEnoughCredit() throws Exception {
+        Subscription heavy = subscription(null, 1);
+        Subscription light = subscription(null, null);
+        CompletableFuture<Void> firstHeavy = new CompletableFuture<>();
+        schedule(heavy, "heavy-1", 1, firstHeavy);
+        CompletableFuture<Void> secondHeavy = schedule(heavy, "heavy-2", 12, CompletableFuture.completedFuture(null));
+        CompletableFuture<Void> lightDone = new CompletableFuture<>();
+        for (int i = 0; i < 3; i++) {
+            lightDone = schedule(light, "light", 1, CompletableFuture.completedFuture(null));
+        }
+
+        lightDone.get(5, TimeUnit.SECONDS);
+        firstHeavy.complete(null);
+        secondHeavy.get(5, TimeUnit.SECONDS);
+
+        assertThat(dispatched).containsSubsequence("heavy-1", "light", "light", "light", "heavy-2");
+    }
+
+    @Test
+    void concurrencyLimitHoldsJobsUntilOneFinishes() throws Exception {
+        Subscription limited = subscription(null, 1);
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        CompletableFuture<Void> firstDone = schedule(limited, "first", 1, first);
+        CompletableFuture<Void> secondDone = schedule(limited, "second", 1, CompletableFuture.completedFuture(null));
+
+        Thread.sleep(200);
+        assertThat(dispatched).containsExactly("first");
+        assertThat(secondDone).isNotDone();
+
+        first.complete(null);
+
+        firstDone.get(5, TimeUnit.SECONDS);
+        secondDone.get(5, TimeUnit.SECONDS);
+        assertThat(dispatched).containsExactly("first", "second");
+    }
+
+    @Test
+    void rateLimitSpacesDispatchesOut() throws Exception {
+        Subscription limited = subscription(2, null);
+        CompletableFuture<Void> last = null;
+        for (int i = 0; i < 3; i++) {
+            last = schedule(limited, "job", 1, CompletableFuture.completedFuture(null));
+        }
+
+        Thread.sleep(200);
+        // A full bucket lets two through, the third waits half a second for a token
+        assertThat(dispatched).hasSize(2);
+
+        last.get(5, TimeUnit.SECONDS);
+        assertThat(dispatched).hasSize(3);
+    }
+
+    @Test
+    void idleRateLimitedQueueIsDroppedOnceItsBucketRefills() throws Exception {
+        Subscription limited = subscription(1, null);
+        Subscription unlimited = subscription(null, null);
+        schedule(limited, "limited", 1, CompletableFuture.completedFuture(null)).get(5, TimeUnit.SECONDS);
+        schedule(unlimited, "unlimited", 1, CompletableFuture.completedFuture(null)).get(5, TimeUnit.SECONDS);
+
+        // Kept while the bucket refills, though the subscription sends nothing more
+        assertThat(scheduler.queueCount()).isEqualTo(1);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.queueCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(scheduler.queueCount()).isZero();
+    }
+
+    @Test
+    void stoppingCancelsQueuedJobs() throws Exception {
+        Subscription limited = subscription(null, 1);
+        schedule(limited, "running", 1, new CompletableFuture<>());
+        CompletableFuture<Void> queued = schedule(limited, "queued", 1, CompletableFuture.completedFuture(null));
+        Thread.sleep(100);
+
+        scheduler.stop();
+
+        assertThatThrownBy(() -> queued.get(1, TimeUnit.SECONDS)).isInstanceOf(CancellationException.class);
+        assertThat(scheduler.schedule(limited, 1, () -> CompletableFuture.completedFuture(null)))
+                .isCompletedExceptionally();
+    }
+}
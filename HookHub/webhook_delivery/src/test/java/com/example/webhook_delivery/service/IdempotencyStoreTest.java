@@ -0,0 +1,231 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.config.NodeIdentity;
+import com.example.webhook_delivery.config.RedisConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyStoreTest {
+
+    private static final UUID SUBSCRIPTION = UUID.randomUUID();
+    private static final String REDIS_KEY = "hookhub:idempotency:" + SUBSCRIPTION + ":order-1";
+
+    private StringRedisTemplate redisTemplate;
+    private ValueOperations<String, String> values;
+    private RedisMessageListenerContainer listenerContainer;
+    private IdempotencyStore store;
+    private IdempotencyStore other;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        values = mock(ValueOperations.class);
+        listenerContainer = mock(RedisMessageListenerContainer.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        store.shutdown();
+        if (other != null) {
+            other.shutdown();
+        }
+    }
+
+    private IdempotencyStore store(boolean strict) {
+        IdempotencyStore store = coldStore(strict);
+        store.warmUp();
+        return store;
+    }
+
+    @SuppressWarnings("unchecked")
+    private IdempotencyStore coldStore(boolean strict) {
+        Cursor<String> keys = mock(Cursor.class);
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(keys);
+        return new IdempotencyStore(redisTemplate, listenerContainer, new NodeIdentity(""), new SimpleMeterRegistry(),
+                3600, 1000, 0.01, strict, 100);
+    }
+
+    @Test
+    void newKeyIsAcceptedAndWrittenInTheBackground() {
+        store = store(false);
+        UUID candidate = UUID.randomUUID();
+        when(values.setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class))).thenReturn(true);
+
+        assertThat(store.claim(SUBSCRIPTION, "order-1", candidate)).isNull();
+
+        verify(values, timeout(1000)).setIfAbsent(REDIS_KEY, candidate.toString(), Duration.ofSeconds(3600));
+    }
+
+    @Test
+    void sameNodeRepeatBeforeBackgroundWriteLandsGetsTheOriginal() throws Exception {
+        store = store(false);
+        UUID original = UUID.randomUUID();
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch letWriteFinish = new CountDownLatch(1);
+        when(values.setIfAbsent(eq(REDIS_KEY), eq(original.toString()), any(Duration.class))).thenAnswer(invocation -> {
+            writeStarted.countDown();
+            letWriteFinish.await(5, TimeUnit.SECONDS);
+            return true;
+        });
+
+        assertThat(store.claim(SUBSCRIPTION, "order-1", original)).isNull();
+        assertThat(writeStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(store.claim(SUBSCRIPTION, "order-1", UUID.randomUUID())).isEqualTo(original);
+        letWriteFinish.countDown();
+    }
+
+    @Test
+    void sameNodeRepeatAfterFailedBackgroundWriteGetsTheOriginal() {
+        store = store(false);
+        UUID original = UUID.randomUUID();
+        when(values.setIfAbsent(eq(REDIS_KEY), eq(original.toString()), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertThat(store.claim(SUBSCRIPTION, "order-1", original)).isNull();
+        verify(values, timeout(1000)).setIfAbsent(eq(REDIS_KEY), eq(original.toString()), any(Duration.class));
+
+        UUID retry = UUID.randomUUID();
+        assertThat(store.claim(SUBSCRIPTION, "order-1", retry)).isEqualTo(original);
+        verify(values, never()).setIfAbsent(eq(REDIS_KEY), eq(retry.toString()), any(Duration.class));
+    }
+
+    @Test
+    void repeatAfterBackgroundWriteIsAnsweredByRedis() {
+        store = store(false);
+        UUID original = UUID.randomUUID();
+        UUID retry = UUID.randomUUID();
+        when(values.setIfAbsent(eq(REDIS_KEY), eq(original.toString()), any(Duration.class))).thenReturn(true);
+        when(values.setIfAbsent(eq(REDIS_KEY), eq(retry.toString()), any(Duration.class))).thenReturn(false);
+        when(values.get(REDIS_KEY)).thenReturn(original.toString());
+
+        store.claim(SUBSCRIPTION, "order-1", original);
+        verify(values, timeout(1000)).setIfAbsent(eq(REDIS_KEY), eq(original.toString()), any(Duration.class));
+
+        assertThat(store.claim(SUBSCRIPTION, "order-1", retry)).isEqualTo(original);
+    }
+
+    @Test
+    void releasedKeyIsAcceptedAgain() {
+        store = store(false);
+        UUID original = UUID.randomUUID();
+        UUID retry = UUID.randomUUID();
+        when(values.setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("down"))
+                .thenReturn(true);
+
+        store.claim(SUBSCRIPTION, "order-1", original);
+        verify(values, timeout(1000)).setIfAbsent(eq(REDIS_KEY), eq(original.toString()), any(Duration.class));
+        store.release(SUBSCRIPTION, "order-1", original);
+
+        assertThat(store.claim(SUBSCRIPTION, "order-1", retry)).isNull();
+    }
+
+    @Test
+    void strictModeChecksRedisOnTheCallingThread() {
+        store = store(true);
+        UUID original = UUID.randomUUID();
+        UUID retry = UUID.randomUUID();
+        when(values.setIfAbsent(eq(REDIS_KEY), eq(original.toString()), any(Duration.class))).thenReturn(true);
+        when(values.setIfAbsent(eq(REDIS_KEY), eq(retry.toString()), any(Duration.class))).thenReturn(false);
+        when(values.get(REDIS_KEY)).thenReturn(original.toString());
+
+        assertThat(store.claim(SUBSCRIPTION, "order-1", original)).isNull();
+        verify(values).setIfAbsent(REDIS_KEY, original.toString(), Duration.ofSeconds(3600));
+        assertThat(store.claim(SUBSCRIPTION, "order-1", retry)).isEqualTo(original);
+    }
+
+    @Test
+    void repeatOnAnotherNodeIsAnsweredFromRedis() {
+        Map<String, String> redis = new ConcurrentHashMap<>();
+        List<MessageListener> listeners = new CopyOnWriteArrayList<>();
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        when(values.get(anyString())).thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> listeners.add(invocation.getArgument(0)))
+                .when(listenerContainer).addMessageListener(any(MessageListener.class), any(Topic.class));
+        when(redisTemplate.convertAndSend(anyString(), anyString())).thenAnswer(invocation -> {
+            Message message = new DefaultMessage(invocation.<String>getArgument(0).getBytes(StandardCharsets.UTF_8),
+                    invocation.<String>getArgument(1).getBytes(StandardCharsets.UTF_8));
+            listeners.forEach(listener -> listener.onMessage(message, null));
+            return (long) listeners.size();
+        });
+        store = store(false);
+        other = store(false);
+        store.start();
+        other.start();
+        UUID original = UUID.randomUUID();
+        UUID retry = UUID.randomUUID();
+
+        assertThat(store.claim(SUBSCRIPTION, "order-1", original)).isNull();
+        verify(redisTemplate, timeout(1000)).convertAndSend(eq(RedisConfig.IDEMPOTENCY_KEYS_CHANNEL), endsWith(REDIS_KEY));
+
+        assertThat(other.claim(SUBSCRIPTION, "order-1", retry)).isEqualTo(original);
+        assertThat(redis).containsEntry(REDIS_KEY, original.toString());
+    }
+
+    @Test
+    void keysClaimedBeforeTheNodeStartedAreCheckedInRedis() {
+        store = coldStore(false);
+        UUID original = UUID.randomUUID();
+        UUID retry = UUID.randomUUID();
+        when(values.setIfAbsent(eq(REDIS_KEY), eq(retry.toString()), any(Duration.class))).thenReturn(false);
+        when(values.get(REDIS_KEY)).thenReturn(original.toString());
+
+        // Filters not filled from Redis yet, so even a key they have never seen goes to Redis first
+        assertThat(store.claim(SUBSCRIPTION, "order-1", retry)).isEqualTo(original);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void warmUpFillsTheFiltersFromRedis() {
+        store = coldStore(false);
+        Cursor<String> keys = mock(Cursor.class);
+        when(keys.hasNext()).thenReturn(true, false);
+        when(keys.next()).thenReturn(REDIS_KEY);
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(keys);
+        store.warmUp();
+        UUID original = UUID.randomUUID();
+        UUID retry = UUID.randomUUID();
+        when(values.setIfAbsent(eq(REDIS_KEY), eq(retry.toString()), any(Duration.class))).thenReturn(false);
+        when(values.get(REDIS_KEY)).thenReturn(original.toString());
+
+        assertThat(store.claim(SUBSCRIPTION, "order-1", retry)).isEqualTo(original);
+    }
+}
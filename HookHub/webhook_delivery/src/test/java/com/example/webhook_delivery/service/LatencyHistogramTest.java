@@ -0,0 +1,98 @@
+package com.example.webhook_delivery.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketsAreExactBelowFourMillis() {
+        for (int millis = 0; millis < 4; millis++) {
+            assertThat(LatencyHistogram.indexOf(millis)).isEqualTo(millis);
+            assertThat(LatencyHistogram.lowerBound(millis)).isEqualTo(millis);
+        }
+    }
+
+    @Test
+    void everyValueFallsInsideItsBucketWithinAQuarter() {
+        int previous = 0;
+        for (long millis = 0; millis < 1 << 20; millis++) {
+            int index = LatencyHistogram.indexOf(millis);
+            assertThat(index).isBetween(previous, LatencyHistogram.BUCKETS - 1);
+            long lower = LatencyHistogram.lowerBound(index);
+            assertThat(lower).isLessThanOrEqualTo(millis);
+            assertThat(LatencyHistogram.lowerBound(index + 1)).isGreaterThan(millis);
+            assertThat(millis - lower).isLessThanOrEqualTo(millis / 4);
+            previous = index;
+        }
+    }
+
+    @Test
+    void valuesBeyondTheLastOctaveGoToTheLastBucket() {
+        assertThat(LatencyHistogram.indexOf(1L << 20)).isEqualTo(LatencyHistogram.BUCKETS - 1);
+        assertThat(LatencyHistogram.indexOf(Long.MAX_VALUE)).isEqualTo(LatencyHistogram.BUCKETS - 1);
+    }
+
+    @Test
+    void valueAtIsNullWhenEmpty() {
+        assertThat(new LatencyHistogram().valueAt(0.5)).isNull();
+    }
+
+    @Test
+    void valueAtStaysWithinAQuarterOfTheExactQuantile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 10_000; millis++) {
+            histogram.record(millis);
+        }
+
+        assertThat(histogram.count()).isEqualTo(10_000);
+        assertThat(histogram.valueAt(0.5)).isCloseTo(5_000L, within(1_250L));
+        assertThat(histogram.valueAt(0.99)).isCloseTo(9_900L, within(2_475L));
+        assertThat(histogram.valueAt(0.0)).isEqualTo(1L);
+        assertThat(histogram.valueAt(1.0)).isBetween(8_192L, 10_239L);
+    }
+
+    @Test
+    void negativeValuesCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertThat(histogram.valueAt(0.5)).isZero();
+    }
+
+    @Test
+    void mergingMatchesRecordingEverythingInOne() {
+        LatencyHistogram all = new LatencyHistogram();
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        for (int millis = 0; millis < 5_000; millis += 7) {
+            all.record(millis);
+            (millis % 2 == 0 ? first : second).record(millis);
+        }
+
+        first.merge(second);
+
+        assertThat(first.counts()).isEqualTo(all.counts());
+        assertThat(first.count()).isEqualTo(all.count());
+        assertThat(first.valueAt(0.9)).isEqualTo(all.valueAt(0.9));
+    }
+
+    @Test
+    void ofRestoresStoredCountsAndPadsShorterArrays() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(250);
+        histogram.record(250);
+
+        LatencyHistogram restored = LatencyHistogram.of(histogram.counts());
+        assertThat(restored.counts()).isEqualTo(histogram.counts());
+        assertThat(restored.count()).isEqualTo(3);
+
+        LatencyHistogram padded = LatencyHistogram.of(new long[]{1, 2});
+        assertThat(padded.counts()).hasSize(LatencyHistogram.BUCKETS);
+        assertThat(padded.count()).isEqualTo(3);
+        assertThat(padded.valueAt(1.0)).isEqualTo(1L);
+    }
+}
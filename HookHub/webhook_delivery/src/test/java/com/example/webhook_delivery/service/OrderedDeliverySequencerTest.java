@@ -0,0 +1,248 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.rabbitmq.WebhookMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrderedDeliverySequencerTest {
+
+    private static final UUID SUBSCRIPTION = UUID.randomUUID();
+    private static final String HEAD_KEY = "hookhub:ordered:" + SUBSCRIPTION + ":head";
+    private static final String QUEUE_KEY = "hookhub:ordered:" + SUBSCRIPTION + ":queue";
+
+    private final Map<String, String> values = new HashMap<>();
+    private final Map<String, LinkedList<String>> lists = new HashMap<>();
+    private final List<UUID> attempted = new ArrayList<>();
+    private final Map<UUID, CompletableFuture<Boolean>> outcomes = new HashMap<>();
+    private StringRedisTemplate redisTemplate;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        ListOperations<String, String> listOps = mock(ListOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(redisTemplate.opsForList()).thenReturn(listOps);
+        when(valueOps.get(anyString())).thenAnswer(invocation -> values.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> values.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOps).set(anyString(), anyString(), any(Duration.class));
+        when(redisTemplate.delete(anyString())).thenAnswer(invocation -> values.remove(invocation.<String>getArgument(0)) != null);
+        when(redisTemplate.getExpire(anyString(), any())).thenReturn(-2L);
+        when(listOps.rightPushAll(anyString(), anyCollection())).thenAnswer(invocation -> {
+            LinkedList<String> list = lists.computeIfAbsent(invocation.getArgument(0), key -> new LinkedList<>());
+            list.addAll(invocation.<Collection<String>>getArgument(1));
+            return (long) list.size();
+        });
+        when(listOps.leftPushAll(anyString(), anyCollection())).thenAnswer(invocation -> {
+            LinkedList<String> list = lists.computeIfAbsent(invocation.getArgument(0), key -> new LinkedList<>());
+            invocation.<Collection<String>>getArgument(1).forEach(list::addFirst);
+            return (long) list.size();
+        });
+        when(listOps.index(anyString(), eq(0L))).thenAnswer(invocation -> {
+            LinkedList<String> list = lists.get(invocation.<String>getArgument(0));
+            return list == null || list.isEmpty() ? null : list.getFirst();
+        });
+        when(listOps.leftPop(anyString())).thenAnswer(invocation -> {
+            LinkedList<String> list = lists.get(invocation.<String>getArgument(0));
+            return list == null ? null : list.pollFirst();
+        });
+        when(listOps.size(anyString())).thenAnswer(invocation -> {
+            LinkedList<String> list = lists.get(invocation.<String>getArgument(0));
+            return list == null ? 0L : (long) list.size();
+        });
+    }
+
+    private OrderedDeliverySequencer sequencer(long headTtlSeconds) {
+        return sequencer(100, headTtlSeconds);
+    }
+
+    private OrderedDeliverySequencer sequencer(int maxBuffered, long headTtlSeconds) {
+        return new OrderedDeliverySequencer(redisTemplate, new ObjectMapper(), maxBuffered, headTtlSeconds);
+    }
+
+    private static WebhookMessage message() {
+        WebhookMessage message = new WebhookMessage();
+        message.setDeliveryTaskId(UUID.randomUUID());
+        message.setSubscriptionId(SUBSCRIPTION);
+        message.setPayload("{}".getBytes(StandardCharsets.UTF_8));
+        message.setAttempt(1);
+        return message;
+    }
+
+    private CompletableFuture<Void> submit(OrderedDeliverySequencer sequencer, WebhookMessage message) {
+        return sequencer.submit(message, next -> {
+            attempted.add(next.getDeliveryTaskId());
+            return outcomes.computeIfAbsent(next.getDeliveryTaskId(), id -> new CompletableFuture<>());
+        });
+    }
+
+    private void finish(WebhookMessage message, boolean retrying) {
+        outcomes.remove(message.getDeliveryTaskId()).complete(retrying);
+    }
+
+    @Test
+    void holdsEventsBehindTheOneBeingAttempted() {
+        OrderedDeliverySequencer sequencer = sequencer(3600);
+        WebhookMessage first = message();
+        WebhookMessage second = message();
+
+        CompletableFuture<Void> firstDone = submit(sequencer, first);
+        CompletableFuture<Void> secondDone = submit(sequencer, second);
+        assertThat(attempted).containsExactly(first.getDeliveryTaskId());
+        assertThat(secondDone).isNotDone();
+
+        finish(first, false);
+
+        assertThat(firstDone).isCompleted();
+        assertThat(attempted).containsExactly(first.getDeliveryTaskId(), second.getDeliveryTaskId());
+        finish(second, false);
+        assertThat(secondDone).isCompleted();
+        assertThat(lists.getOrDefault(QUEUE_KEY, new LinkedList<>())).isEmpty();
+    }
+
+    @Test
+    void retryingHeadSpillsHeldEventsAndLetsOnlyItsRetryThrough() {
+        OrderedDeliverySequencer sequencer = sequencer(3600);
+        WebhookMessage first = message();
+        WebhookMessage second = message();
+        WebhookMessage third = message();
+        submit(sequencer, first);
+        CompletableFuture<Void> secondDone = submit(sequencer, second);
+
+        finish(first, true);
+
+        assertThat(secondDone).isCompleted();
+        assertThat(values).containsEntry(HEAD_KEY, first.getDeliveryTaskId().toString());
+        assertThat(submit(sequencer, third)).isCompleted();
+        assertThat(lists.get(QUEUE_KEY)).hasSize(2);
+        assertThat(attempted).containsExactly(first.getDeliveryTaskId());
+
+        first.setAttempt(2);
+        submit(sequencer, first);
+        finish(first, false);
+
+        assertThat(values).doesNotContainKey(HEAD_KEY);
+        assertThat(attempted).containsExactly(first.getDeliveryTaskId(), first.getDeliveryTaskId(), second.getDeliveryTaskId());
+        finish(second, false);
+        assertThat(attempted).endsWith(third.getDeliveryTaskId());
+        finish(third, false);
+        assertThat(lists.get(QUEUE_KEY)).isEmpty();
+    }
+
+    @Test
+    void eventsHeldInMemoryStayAheadOfOnesSpilledOnceTheBufferFilled() {
+        OrderedDeliverySequencer sequencer = sequencer(2, 3600);
+        List<WebhookMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            messages.add(message());
+            submit(sequencer, messages.get(i));
+        }
+        assertThat(lists.get(QUEUE_KEY)).hasSize(2);
+
+        finish(messages.get(0), true);
+        messages.get(0).setAttempt(2);
+        submit(sequencer, messages.get(0));
+        for (WebhookMessage message : messages) {
+            finish(message, false);
+        }
+
+        List<UUID> expected = new ArrayList<>();
+        expected.add(messages.get(0).getDeliveryTaskId());
+        messages.forEach(message -> expected.add(message.getDeliveryTaskId()));
+        assertThat(attempted).containsExactlyElementsOf(expected);
+        assertThat(lists.get(QUEUE_KEY)).isEmpty();
+    }
+
+    @Test
+    void failedRedisReadWhenOpeningALaneFailsOnlyThatSubmit() {
+        when(redisTemplate.opsForValue().get(HEAD_KEY)).thenThrow(new IllegalStateException("redis down"));
+        OrderedDeliverySequencer sequencer = sequencer(3600);
+
+        assertThat(submit(sequencer, message())).isCompletedExceptionally();
+        assertThat(attempted).isEmpty();
+    }
+
+    @Test
+    void retryingHeadStopsHoldingTheLaneOnceItsRecordExpires() {
+        OrderedDeliverySequencer sequencer = sequencer(0);
+        WebhookMessage first = message();
+        WebhookMessage second = message();
+        submit(sequencer, first);
+        finish(first, true);
+
+        submit(sequencer, second);
+
+        assertThat(attempted).containsExactly(first.getDeliveryTaskId(), second.getDeliveryTaskId());
+    }
+
+    @Test
+    void abandonedHeadReleasesTheLane() {
+        OrderedDeliverySequencer sequencer = sequencer(3600);
+        WebhookMessage first = message();
+        WebhookMessage second = message();
+        CompletableFuture<Void> firstDone = submit(sequencer, first);
+        outcomes.remove(first.getDeliveryTaskId()).completeExceptionally(new IllegalStateException("boom"));
+        assertThat(firstDone).isCompletedExceptionally();
+        assertThat(submit(sequencer, second)).isCompleted();
+        assertThat(attempted).containsExactly(first.getDeliveryTaskId());
+
+        sequencer.abandon(SUBSCRIPTION, first.getDeliveryTaskId());
+
+        assertThat(values).doesNotContainKey(HEAD_KEY);
+        assertThat(attempted).containsExactly(first.getDeliveryTaskId(), second.getDeliveryTaskId());
+    }
+
+    @Test
+    void abandonWithoutLocalLaneClearsOnlyItsOwnHeadRecord() {
+        OrderedDeliverySequencer sequencer = sequencer(3600);
+        UUID head = UUID.randomUUID();
+        values.put(HEAD_KEY, head.toString());
+
+        sequencer.abandon(SUBSCRIPTION, UUID.randomUUID());
+        assertThat(values).containsEntry(HEAD_KEY, head.toString());
+
+        sequencer.abandon(SUBSCRIPTION, head);
+        assertThat(values).doesNotContainKey(HEAD_KEY);
+    }
+
+    @Test
+    void reopenedLaneResumesFromTheRedisList() throws Exception {
+        WebhookMessage leftOver = message();
+        lists.computeIfAbsent(QUEUE_KEY, key -> new LinkedList<>()).add(new ObjectMapper().writeValueAsString(leftOver));
+        OrderedDeliverySequencer sequencer = sequencer(3600);
+        WebhookMessage next = message();
+
+        assertThat(submit(sequencer, next)).isCompleted();
+        assertThat(attempted).containsExactly(leftOver.getDeliveryTaskId());
+
+        finish(leftOver, false);
+        assertThat(attempted).containsExactly(leftOver.getDeliveryTaskId(), next.getDeliveryTaskId());
+        finish(next, false);
+        assertThat(lists.get(QUEUE_KEY)).isEmpty();
+    }
+}
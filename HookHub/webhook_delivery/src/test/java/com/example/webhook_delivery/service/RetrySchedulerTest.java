@@ -0,0 +1,124 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.entity.Subscription;
+import com.example.webhook_delivery.rabbitmq.WebhookMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RetrySchedulerTest {
+
+    private StringRedisTemplate redisTemplate;
+    private ZSetOperations<String, String> zSet;
+    private DeliveryPublisher deliveryPublisher;
+    private RetryScheduler scheduler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        zSet = mock(ZSetOperations.class);
+        deliveryPublisher = mock(DeliveryPublisher.class);
+        when(redisTemplate.opsForZSet()).thenReturn(zSet);
+        scheduler = new RetryScheduler(redisTemplate, deliveryPublisher, new ObjectMapper());
+        ReflectionTestUtils.setField(scheduler, "defaultMaxRetries", 5);
+        ReflectionTestUtils.setField(scheduler, "defaultBaseDelayMs", 1_000L);
+        ReflectionTestUtils.setField(scheduler, "defaultMaxDelayMs", 60_000L);
+        ReflectionTestUtils.setField(scheduler, "maxRetryAfterSeconds", 300L);
+    }
+
+    private static WebhookMessage message() {
+        WebhookMessage message = new WebhookMessage();
+        message.setDeliveryTaskId(UUID.randomUUID());
+        message.setSubscriptionId(UUID.randomUUID());
+        message.setPayload("{}".getBytes(StandardCharsets.UTF_8));
+        message.setAttempt(2);
+        return message;
+    }
+
+    @Test
+    void maxAttemptsPrefersTheSubscriptionSetting() {
+        Subscription subscription = new Subscription();
+        assertThat(scheduler.maxAttempts(subscription)).isEqualTo(5);
+
+        subscription.setMaxRetries(8);
+        assertThat(scheduler.maxAttempts(subscription)).isEqualTo(8);
+    }
+
+    @Test
+    void backoffDoublesPerAttemptWithEqualJitter() {
+        Subscription subscription = new Subscription();
+        for (int i = 0; i < 200; i++) {
+            assertThat(scheduler.backoffMs(subscription, 2, null)).isBetween(500L, 1_000L);
+            assertThat(scheduler.backoffMs(subscription, 3, null)).isBetween(1_000L, 2_000L);
+            assertThat(scheduler.backoffMs(subscription, 5, null)).isBetween(4_000L, 8_000L);
+        }
+    }
+
+    @Test
+    void backoffIsCappedEvenForLargeAttemptNumbers() {
+        Subscription subscription = new Subscription();
+        subscription.setRetryBaseDelayMs(100L);
+        subscription.setRetryMaxDelayMs(10_000L);
+        for (int attempt = 2; attempt < 100; attempt++) {
+            assertThat(scheduler.backoffMs(subscription, attempt, null)).isBetween(50L, 10_000L);
+        }
+    }
+
+    @Test
+    void retryAfterIsALowerBoundUpToTheConfiguredMaximum() {
+        Subscription subscription = new Subscription();
+        assertThat(scheduler.backoffMs(subscription, 2, 30_000L)).isEqualTo(30_000L);
+        assertThat(scheduler.backoffMs(subscription, 2, 3_600_000L)).isEqualTo(300_000L);
+        assertThat(scheduler.backoffMs(subscription, 2, 10L)).isBetween(500L, 1_000L);
+    }
+
+    @Test
+    void scheduleStoresTheMessageInRedis() {
+        WebhookMessage message = message();
+
+        scheduler.schedule(message, 1_000);
+
+        verify(zSet).add(eq(RetryScheduler.RETRY_KEY), anyString(), anyDouble());
+        verify(deliveryPublisher, never()).publishToRetryQueue(message);
+    }
+
+    @Test
+    void scheduleFallsBackToTheBrokerRetryQueueWhenRedisFails() {
+        WebhookMessage message = message();
+        when(zSet.add(eq(RetryScheduler.RETRY_KEY), anyString(), anyDouble()))
+                .thenThrow(new RedisConnectionFailureException("down"));
+        when(deliveryPublisher.publishToRetryQueue(message)).thenReturn(true);
+
+        scheduler.schedule(message, 1_000);
+
+        verify(deliveryPublisher).publishToRetryQueue(message);
+    }
+
+    @Test
+    void scheduleFailsWhenNeitherRedisNorTheBrokerTakeTheMessage() {
+        WebhookMessage message = message();
+        when(zSet.add(eq(RetryScheduler.RETRY_KEY), anyString(), anyDouble()))
+                .thenThrow(new RedisConnectionFailureException("down"));
+        when(deliveryPublisher.publishToRetryQueue(message)).thenReturn(false);
+
+        assertThatThrownBy(() -> scheduler.schedule(message, 1_000)).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.webhook_delivery.service;
+
+import com.example.webhook_delivery.entity.Subscription;
+import com.example.webhook_delivery.repository.SubscriptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SubscriptionRoutingIndexTest {
+
+    private final Subscription exact = subscription("order.created");
+    private final Subscription orders = subscription("order.*");
+    private final Subscription everything = subscription("*");
+    private final Subscription invoices = subscription("invoice.paid");
+
+    private SubscriptionRepository repository;
+    private SubscriptionRoutingIndex index;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(SubscriptionRepository.class);
+        when(repository.findAll()).thenReturn(List.of(everything, orders, exact, invoices, subscription(null)));
+        index = new SubscriptionRoutingIndex(repository);
+    }
+
+    private static Subscription subscription(String eventType) {
+        Subscription subscription = new Subscription();
+        subscription.setId(UUID.randomUUID());
+        subscription.setTargetUrl("https://hooks.example.com/" + eventType);
+        subscription.setEventType(eventType);
+        return subscription;
+    }
+
+    @Test
+    void matchesExactPrefixAndCatchAllWithExactFirst() {
+        List<Subscription> matches = index.lookup("order.created");
+
+        assertThat(matches).containsExactlyInAnyOrder(exact, orders, everything);
+        assertThat(matches.get(0)).isEqualTo(exact);
+    }
+
+    @Test
+    void prefixOnlyMatchesEventTypesStartingWithIt() {
+        assertThat(index.lookup("order.shipped")).containsExactlyInAnyOrder(orders, everything);
+        assertThat(index.lookup("order")).containsExactly(everything);
+        assertThat(index.lookup("invoice.paid")).containsExactlyInAnyOrder(invoices, everything);
+        assertThat(index.lookup("")).containsExactly(everything);
+    }
+
+    @Test
+    void loadsLazilyOnFirstLookupOnly() {
+        index.lookup("order.created");
+        index.lookup("invoice.paid");
+
+        verify(repository, times(1)).findAll();
+    }
+
+    @Test
+    void changeMovesSubscriptionBetweenExactAndPrefix() {
+        index.lookup("order.created");
+        Subscription moved = subscription("invoice.*");
+        moved.setId(exact.getId());
+
+        index.onSubscriptionChanged(new SubscriptionChangedEvent(exact.getId(), moved, false));
+
+        assertThat(index.lookup("order.created")).containsExactlyInAnyOrder(orders, everything);
+        assertThat(index.lookup("invoice.paid")).containsExactlyInAnyOrder(invoices, moved, everything);
+    }
+
+    @Test
+    void deletionAndCreationUpdateTheSnapshot() {
+        index.lookup("order.created");
+        Subscription created = subscription("order.created");
+
+        index.onSubscriptionChanged(new SubscriptionChangedEvent(orders.getId(), null, false));
+        index.onSubscriptionChanged(new SubscriptionChangedEvent(created.getId(), created, true));
+
+        assertThat(index.lookup("order.created")).containsExactlyInAnyOrder(exact, created, everything);
+        assertThat(index.lookup("order.shipped")).containsExactly(everything);
+    }
+}
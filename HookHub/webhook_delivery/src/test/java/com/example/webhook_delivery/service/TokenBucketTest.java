@@ -0,0 +1,64 @@
+package com.example.webhook_delivery.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void startsWithOneSecondOfTokens() {
+        TokenBucket bucket = new TokenBucket(3, 0);
+        for (int i = 0; i < 3; i++) {
+            assertThat(bucket.hasToken(0)).isTrue();
+            bucket.consume();
+        }
+        assertThat(bucket.hasToken(0)).isFalse();
+    }
+
+    @Test
+    void refillsContinuouslyAtTheRate() {
+        TokenBucket bucket = new TokenBucket(4, 0);
+        for (int i = 0; i < 4; i++) {
+            bucket.consume();
+        }
+
+        assertThat(bucket.hasToken(SECOND / 8)).isFalse();
+        assertThat(bucket.nanosUntilToken(SECOND / 8)).isEqualTo(SECOND / 8);
+        assertThat(bucket.hasToken(SECOND / 4)).isTrue();
+        assertThat(bucket.nanosUntilToken(SECOND / 4)).isZero();
+    }
+
+    @Test
+    void holdsAtMostOneSecondOfTokens() {
+        TokenBucket bucket = new TokenBucket(2, 0);
+        bucket.hasToken(60 * SECOND);
+        bucket.consume();
+        bucket.consume();
+
+        assertThat(bucket.hasToken(60 * SECOND)).isFalse();
+    }
+
+    @Test
+    void isFullOnceRefilledToCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 0);
+        assertThat(bucket.isFull(0)).isTrue();
+        bucket.consume();
+
+        assertThat(bucket.isFull(SECOND / 4)).isFalse();
+        assertThat(bucket.isFull(SECOND / 2)).isTrue();
+    }
+
+    @Test
+    void loweringTheRateDropsTokensAboveTheNewCapacity() {
+        TokenBucket bucket = new TokenBucket(10, 0);
+        bucket.setRate(1);
+
+        assertThat(bucket.hasToken(0)).isTrue();
+        bucket.consume();
+        assertThat(bucket.hasToken(0)).isFalse();
+        assertThat(bucket.nanosUntilToken(0)).isEqualTo(SECOND);
+    }
+}